@@ -0,0 +1,367 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.common;
+
+import java.awt.MediaTracker;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.lang.ref.WeakReference;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.ImageIcon;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Cache for icons loaded from the class path. The key is the class loader and
+ * the resource name, so the same icon file is only decoded once and all users
+ * share the same pixel data. The icons are held strongly in LRU order up to a
+ * maximum number of bytes (Width x height x 4). Icons evicted from that part
+ * are only softly referenced and may still be found until the garbage
+ * collector needs the memory. An icon larger than the maximum is only softly
+ * referenced from the start. Class loaders are only weakly referenced, so
+ * the cache never prevents a class loader from being unloaded. This class is
+ * thread safe.
+ */
+public final class IconCache {
+
+    /** Default maximum size of the strongly referenced icons: 8 MB. */
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+
+    private static final IconCache DEFAULT = new IconCache(DEFAULT_MAX_BYTES);
+
+    /** Key object for classes loaded by the bootstrap class loader. */
+    private static final Object BOOTSTRAP = new Object();
+
+    private final long maxBytes;
+
+    private final Map strong = new LinkedHashMap(16, 0.75f, true);
+
+    private final Map soft = new HashMap();
+
+    private final ReferenceQueue keyQueue = new ReferenceQueue();
+
+    private final ReferenceQueue valueQueue = new ReferenceQueue();
+
+    private long byteSize = 0;
+
+    private long hitCount = 0;
+
+    private long softHitCount = 0;
+
+    private long missCount = 0;
+
+    private long evictionCount = 0;
+
+    /**
+     * Constructor with size.
+     * 
+     * @param maxBytes
+     *            Maximum size of the strongly referenced icons in bytes - Must
+     *            be greater than zero.
+     */
+    public IconCache(final long maxBytes) {
+        super();
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("The argument 'maxBytes' must be > 0: "
+                    + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cache used by {@link Utils4Swing#loadIcon(Class, String)}.
+     * 
+     * @return Default cache.
+     */
+    public static IconCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns an icon located in the same package as a given class. The icon
+     * is shared - Don't modify it.
+     * 
+     * @param clasz
+     *            Class with the same package where the icon is located.
+     * @param name
+     *            Filename of the icon.
+     * 
+     * @return Cached or new icon instance.
+     */
+    public final ImageIcon getIcon(final Class clasz, final String name) {
+        Utils4J.checkNotNull("clasz", clasz);
+        Utils4J.checkNotNull("name", name);
+        final Object loader = getLoader(clasz);
+        final String resource = "/" + Utils4J.getPackagePath(clasz) + "/" + name;
+        final Key lookup = new Key(loader, resource, null);
+        synchronized (this) {
+            expunge();
+            final ImageIcon icon = (ImageIcon) strong.get(lookup);
+            if (icon != null) {
+                hitCount++;
+                return icon;
+            }
+            final IconReference ref = (IconReference) soft.remove(lookup);
+            if (ref != null) {
+                final ImageIcon softIcon = (ImageIcon) ref.get();
+                if (softIcon != null) {
+                    hitCount++;
+                    softHitCount++;
+                    return put(ref.key, softIcon);
+                }
+            }
+            missCount++;
+        }
+        // Decode outside the lock
+        final URL url = Utils4J.getResource(clasz, name);
+        final ImageIcon icon = new ImageIcon(url);
+        if (icon.getImageLoadStatus() != MediaTracker.COMPLETE) {
+            // Broken images are not cached
+            return icon;
+        }
+        synchronized (this) {
+            return put(new Key(loader, resource, keyQueue), icon);
+        }
+    }
+
+    private static Object getLoader(final Class clasz) {
+        final ClassLoader loader = clasz.getClassLoader();
+        if (loader == null) {
+            return BOOTSTRAP;
+        }
+        return loader;
+    }
+
+    private ImageIcon put(final Key key, final ImageIcon icon) {
+        final ImageIcon existing = (ImageIcon) strong.get(key);
+        if (existing != null) {
+            // Loaded by another thread in the meantime
+            return existing;
+        }
+        final long bytes = getBytes(icon);
+        if (bytes > maxBytes) {
+            // Would evict every other icon and then itself
+            soft.put(key, new IconReference(key, icon, valueQueue));
+            return icon;
+        }
+        soft.remove(key);
+        strong.put(key, icon);
+        byteSize = byteSize + bytes;
+        final Iterator it = strong.entrySet().iterator();
+        while ((byteSize > maxBytes) && it.hasNext()) {
+            final Map.Entry eldest = (Map.Entry) it.next();
+            final Key eldestKey = (Key) eldest.getKey();
+            final ImageIcon eldestIcon = (ImageIcon) eldest.getValue();
+            it.remove();
+            byteSize = byteSize - getBytes(eldestIcon);
+            soft.put(eldestKey, new IconReference(eldestKey, eldestIcon, valueQueue));
+            evictionCount++;
+        }
+        return icon;
+    }
+
+    private static long getBytes(final ImageIcon icon) {
+        return 4L * Math.max(0, icon.getIconWidth()) * Math.max(0, icon.getIconHeight());
+    }
+
+    /**
+     * Removes the entries of unloaded class loaders and icons collected by
+     * the garbage collector.
+     */
+    private void expunge() {
+        Reference ref;
+        while ((ref = keyQueue.poll()) != null) {
+            final ImageIcon icon = (ImageIcon) strong.remove(ref);
+            if (icon != null) {
+                byteSize = byteSize - getBytes(icon);
+            }
+            soft.remove(ref);
+        }
+        while ((ref = valueQueue.poll()) != null) {
+            final IconReference iconRef = (IconReference) ref;
+            if (soft.get(iconRef.key) == iconRef) {
+                soft.remove(iconRef.key);
+            }
+        }
+    }
+
+    /**
+     * Removes all icons from the cache. The statistics are not reset.
+     */
+    public final synchronized void clear() {
+        strong.clear();
+        soft.clear();
+        byteSize = 0;
+    }
+
+    /**
+     * Returns the maximum size of the strongly referenced icons.
+     * 
+     * @return Number of bytes.
+     */
+    public final long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Returns the size of the strongly referenced icons.
+     * 
+     * @return Number of bytes.
+     */
+    public final synchronized long getByteSize() {
+        return byteSize;
+    }
+
+    /**
+     * Returns the number of strongly referenced icons.
+     * 
+     * @return Number of icons.
+     */
+    public final synchronized int getSize() {
+        return strong.size();
+    }
+
+    /**
+     * Returns the number of lookups that found an icon in the cache.
+     * 
+     * @return Number of hits including the soft hits.
+     */
+    public final synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that found an icon that was already
+     * evicted but not yet garbage collected.
+     * 
+     * @return Number of soft hits.
+     */
+    public final synchronized long getSoftHitCount() {
+        return softHitCount;
+    }
+
+    /**
+     * Returns the number of lookups that had to load the icon.
+     * 
+     * @return Number of misses.
+     */
+    public final synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Returns the number of icons that were moved to the softly referenced
+     * part because of the size limit.
+     * 
+     * @return Number of evictions.
+     */
+    public final synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final synchronized String toString() {
+        return "IconCache [size=" + strong.size() + ", bytes=" + byteSize + "/" + maxBytes
+                + ", soft=" + soft.size() + ", hits=" + hitCount + ", softHits="
+                + softHitCount + ", misses=" + missCount + ", evictions=" + evictionCount
+                + "]";
+    }
+
+    /**
+     * Weakly referenced class loader and resource name.
+     */
+    private static final class Key extends WeakReference {
+
+        private final String name;
+
+        private final int hash;
+
+        /**
+         * Constructor with loader and name.
+         * 
+         * @param loader
+         *            Class loader or the bootstrap marker.
+         * @param name
+         *            Absolute resource name.
+         * @param queue
+         *            Queue to register the key or <code>null</code> for a key
+         *            only used to look up an entry.
+         */
+        public Key(final Object loader, final String name, final ReferenceQueue queue) {
+            super(loader, queue);
+            this.name = name;
+            this.hash = System.identityHashCode(loader) * 31 + name.hashCode();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final int hashCode() {
+            return hash;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final boolean equals(final Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            final Object loader = get();
+            return (loader != null) && (loader == other.get()) && name.equals(other.name);
+        }
+
+    }
+
+    /**
+     * Softly referenced icon that knows its key.
+     */
+    private static final class IconReference extends SoftReference {
+
+        private final Key key;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param key
+         *            Key of the icon.
+         * @param icon
+         *            Icon.
+         * @param queue
+         *            Queue to register the reference.
+         */
+        public IconReference(final Key key, final ImageIcon icon, final ReferenceQueue queue) {
+            super(icon, queue);
+            this.key = key;
+        }
+
+    }
+
+}
@@ -24,7 +24,6 @@ import java.awt.Insets;
 import java.awt.KeyboardFocusManager;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseListener;
-import java.net.URL;
 
 import javax.swing.ImageIcon;
 import javax.swing.JFrame;
@@ -112,18 +111,19 @@ public final class Utils4Swing {
     }
 
     /**
-     * Load an icon located in the same package as a given class.
+     * Load an icon located in the same package as a given class. The icon is
+     * taken from the {@link IconCache#getDefault() default cache}, so it's
+     * only decoded once and shared by all callers - Don't modify it.
      * 
      * @param clasz
      *            Class with the same package where the icon is located.
      * @param name
      *            Filename of the icon.
      * 
-     * @return New icon instance.
+     * @return Shared icon instance.
      */
     public static ImageIcon loadIcon(final Class clasz, final String name) {
-        final URL url = Utils4J.getResource(clasz, name);
-        return new ImageIcon(url);
+        return IconCache.getDefault().getIcon(clasz, name);
     }
 
     /**
@@ -0,0 +1,195 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.common;
+
+import java.util.LinkedList;
+
+/**
+ * Executes tasks in background threads. Threads are started on demand up to a
+ * maximum number and stop after they have been idle for a while. All threads
+ * are daemon threads, so a queue never prevents the application from ending.
+ * Use this for work that must not block the Event Dispatch Thread (EDT) like
+ * listing directories.
+ */
+public final class WorkerQueue {
+
+    /** Time in milliseconds an idle thread waits for new tasks before it ends. */
+    private static final long KEEP_ALIVE = 30000;
+
+    private final String name;
+
+    private final int maxThreads;
+
+    private final LinkedList tasks = new LinkedList();
+
+    private final Runnable worker;
+
+    private int threadCount = 0;
+
+    private int idleCount = 0;
+
+    private int threadNo = 0;
+
+    /**
+     * Constructor with name and number of threads.
+     * 
+     * @param name
+     *            Prefix for the names of the threads.
+     * @param maxThreads
+     *            Maximum number of threads running tasks in parallel - Must be
+     *            greater than zero.
+     */
+    public WorkerQueue(final String name, final int maxThreads) {
+        super();
+        if (maxThreads <= 0) {
+            throw new IllegalArgumentException("The argument 'maxThreads' must be > 0: "
+                    + maxThreads);
+        }
+        this.name = name;
+        this.maxThreads = maxThreads;
+        this.worker = new Runnable() {
+            public void run() {
+                work();
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum number of threads.
+     * 
+     * @return Number of threads running tasks in parallel.
+     */
+    public final int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * Adds a task to the end of the queue.
+     * 
+     * @param task
+     *            Task to execute in a background thread.
+     */
+    public final synchronized void execute(final Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("The argument 'task' cannot be null!");
+        }
+        tasks.add(task);
+        if (idleCount > 0) {
+            notify();
+        }
+        // Woken threads may not have taken their tasks yet
+        if ((tasks.size() > idleCount) && (threadCount < maxThreads)) {
+            startThread();
+        }
+    }
+
+    private void startThread() {
+        threadCount++;
+        threadNo++;
+        final Thread thread = new Thread(worker, name + "-" + threadNo);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Removes a task that has not been started yet.
+     * 
+     * @param task
+     *            Task to remove.
+     * 
+     * @return If the task was waiting and is removed now <code>true</code>
+     *         else <code>false</code>.
+     */
+    public final synchronized boolean remove(final Runnable task) {
+        return tasks.remove(task);
+    }
+
+    /**
+     * Returns the number of tasks waiting for a thread.
+     * 
+     * @return Number of tasks.
+     */
+    public final synchronized int getQueueSize() {
+        return tasks.size();
+    }
+
+    /**
+     * Returns the number of running threads.
+     * 
+     * @return Number of threads - Busy and idle ones.
+     */
+    public final synchronized int getThreadCount() {
+        return threadCount;
+    }
+
+    private void work() {
+        boolean stopped = false;
+        try {
+            Runnable task;
+            while ((task = next()) != null) {
+                try {
+                    task.run();
+                } catch (final RuntimeException ex) {
+                    // Report like an uncaught exception but keep the thread
+                    final Thread thread = Thread.currentThread();
+                    thread.getThreadGroup().uncaughtException(thread, ex);
+                }
+            }
+            // next() already removed the thread from the count
+            stopped = true;
+        } finally {
+            if (!stopped) {
+                died();
+            }
+        }
+    }
+
+    private synchronized void died() {
+        // An Error ends the thread - Don't let the queue run out of threads
+        threadCount--;
+        if (tasks.size() > idleCount) {
+            startThread();
+        }
+    }
+
+    private synchronized Runnable next() {
+        final long end = System.currentTimeMillis() + KEEP_ALIVE;
+        long wait = KEEP_ALIVE;
+        while (tasks.isEmpty()) {
+            if (wait <= 0) {
+                threadCount--;
+                return null;
+            }
+            idleCount++;
+            try {
+                wait(wait);
+            } catch (final InterruptedException ex) {
+                ignore();
+            } finally {
+                idleCount--;
+            }
+            wait = end - System.currentTimeMillis();
+        }
+        return (Runnable) tasks.removeFirst();
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+}
@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.dialogs;
+
+import javax.swing.JFileChooser;
+import javax.swing.UIManager;
+
+/**
+ * Keeps a <code>JFileChooser</code> configured for directories, so only the
+ * first dialog pays for the expensive creation (Look and feel icons, file
+ * system roots, shell folders). With {@link #prewarm()} the chooser is even
+ * created in a background thread before it's needed - For example at
+ * application start. The chooser is not realized there and its current
+ * directory is only set when a dialog opens it.
+ */
+public final class DirectoryChooserCache {
+
+    private static final Object LOCK = new Object();
+
+    private static JFileChooser chooser = null;
+
+    private static String lookAndFeel = null;
+
+    private static boolean building = false;
+
+    /**
+     * Private constructor.
+     */
+    private DirectoryChooserCache() {
+        throw new UnsupportedOperationException(
+                "This utility class is not intended to be instanciated!");
+    }
+
+    /**
+     * Creates the chooser in a background thread with low priority and
+     * returns immediately. Does nothing if the chooser already exists or is
+     * being created.
+     */
+    public static void prewarm() {
+        synchronized (LOCK) {
+            if ((chooser != null) || building) {
+                return;
+            }
+            building = true;
+        }
+        final Thread thread = new Thread(new Runnable() {
+            public void run() {
+                JFileChooser created = null;
+                try {
+                    created = create();
+                } finally {
+                    synchronized (LOCK) {
+                        building = false;
+                        if ((chooser == null) && (created != null)) {
+                            chooser = created;
+                            lookAndFeel = currentLookAndFeel();
+                        }
+                        LOCK.notifyAll();
+                    }
+                }
+            }
+        }, "DirectoryChooserPrewarm");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+    }
+
+    /**
+     * Returns if a chooser is ready to use.
+     * 
+     * @return If the next dialog opens without creating a chooser
+     *         <code>true</code> else <code>false</code>.
+     */
+    public static boolean isPrewarmed() {
+        synchronized (LOCK) {
+            return chooser != null;
+        }
+    }
+
+    /**
+     * Removes the chooser, so the next dialog creates a new one.
+     */
+    public static void clear() {
+        synchronized (LOCK) {
+            chooser = null;
+            lookAndFeel = null;
+        }
+    }
+
+    /**
+     * Takes the chooser out of the cache or creates a new one. If the chooser
+     * is just being created in the background this method waits for it. Must
+     * be called in the EDT.
+     * 
+     * @return Chooser for directories - Return it with
+     *         {@link #release(JFileChooser)} after the dialog was closed.
+     */
+    static JFileChooser acquire() {
+        final JFileChooser cached;
+        final String laf;
+        synchronized (LOCK) {
+            while (building) {
+                try {
+                    LOCK.wait();
+                } catch (final InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+            cached = chooser;
+            laf = lookAndFeel;
+            chooser = null;
+            lookAndFeel = null;
+        }
+        if (cached == null) {
+            return create();
+        }
+        if (!currentLookAndFeel().equals(laf)) {
+            cached.updateUI();
+        }
+        cached.setSelectedFile(null);
+        return cached;
+    }
+
+    /**
+     * Puts a chooser back into the cache for the next dialog. Must be called
+     * in the EDT.
+     * 
+     * @param used
+     *            Chooser returned by {@link #acquire()}.
+     */
+    static void release(final JFileChooser used) {
+        synchronized (LOCK) {
+            if ((chooser == null) && !building) {
+                chooser = used;
+                lookAndFeel = currentLookAndFeel();
+            }
+        }
+    }
+
+    private static JFileChooser create() {
+        final JFileChooser created = new JFileChooser();
+        created.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        created.setAcceptAllFileFilterUsed(false);
+        return created;
+    }
+
+    private static String currentLookAndFeel() {
+        return UIManager.getLookAndFeel().getClass().getName();
+    }
+
+}
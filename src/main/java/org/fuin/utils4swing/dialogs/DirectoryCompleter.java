@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.dialogs;
+
+import java.awt.event.FocusAdapter;
+import java.awt.event.FocusEvent;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.io.File;
+
+import javax.swing.JList;
+import javax.swing.JPopupMenu;
+import javax.swing.JScrollPane;
+import javax.swing.JTextField;
+import javax.swing.ListSelectionModel;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+
+import org.fuin.utils4j.Utils4J;
+import org.fuin.utils4swing.common.WorkerQueue;
+
+/**
+ * Autocompletion for a text field containing a directory. The parent directory
+ * of the typed path is listed in a background thread with a
+ * {@link DirectoryListingCache}. The names of the sub directories are kept in
+ * a sorted array, so every key stroke inside the same directory is a binary
+ * search without any file system access in the Event Dispatch Thread (EDT).
+ * Matching names are shown in a popup below the text field. All methods must
+ * be called in the EDT.
+ */
+public final class DirectoryCompleter {
+
+    private static final WorkerQueue QUEUE = new WorkerQueue("DirectoryCompleter", 2);
+
+    /** Maximum number of suggestions shown in the popup. */
+    private static final int MAX_SUGGESTIONS = 100;
+
+    private static final int VISIBLE_ROWS = 8;
+
+    private static final String[] EMPTY = new String[0];
+
+    private final JTextField textField;
+
+    private final DirectoryListingCache cache;
+
+    private final JPopupMenu popup;
+
+    private final JList list;
+
+    private final DocumentListener documentListener;
+
+    private final KeyAdapter keyListener;
+
+    private final FocusAdapter focusListener;
+
+    private File parent = null;
+
+    private String[] names = EMPTY;
+
+    private String base = null;
+
+    private File pendingParent = null;
+
+    private Runnable pendingTask = null;
+
+    /**
+     * Constructor with text field using the
+     * {@link DirectoryListingCache#getDefault() default cache}.
+     * 
+     * @param textField
+     *            Text field to complete.
+     */
+    public DirectoryCompleter(final JTextField textField) {
+        this(textField, DirectoryListingCache.getDefault());
+    }
+
+    /**
+     * Constructor with text field and cache. The completion is active
+     * immediately.
+     * 
+     * @param textField
+     *            Text field to complete.
+     * @param cache
+     *            Cache for directory listings.
+     */
+    public DirectoryCompleter(final JTextField textField, final DirectoryListingCache cache) {
+        super();
+        Utils4J.checkNotNull("textField", textField);
+        Utils4J.checkNotNull("cache", cache);
+        this.textField = textField;
+        this.cache = cache;
+
+        list = new JList();
+        list.setFocusable(false);
+        list.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        list.addMouseListener(new MouseAdapter() {
+            public void mouseClicked(final MouseEvent e) {
+                accept(list.locationToIndex(e.getPoint()));
+            }
+        });
+        final JScrollPane scrollPane = new JScrollPane(list);
+        scrollPane.setFocusable(false);
+        popup = new JPopupMenu();
+        popup.setFocusable(false);
+        popup.add(scrollPane);
+
+        documentListener = new DocumentListener() {
+            public void insertUpdate(final DocumentEvent e) {
+                update();
+            }
+
+            public void removeUpdate(final DocumentEvent e) {
+                update();
+            }
+
+            public void changedUpdate(final DocumentEvent e) {
+                update();
+            }
+        };
+        keyListener = new KeyAdapter() {
+            public void keyPressed(final KeyEvent e) {
+                if (popup.isVisible() && handleKey(e.getKeyCode())) {
+                    e.consume();
+                }
+            }
+        };
+        focusListener = new FocusAdapter() {
+            public void focusLost(final FocusEvent e) {
+                hide();
+            }
+        };
+        textField.getDocument().addDocumentListener(documentListener);
+        textField.addKeyListener(keyListener);
+        textField.addFocusListener(focusListener);
+    }
+
+    /**
+     * Removes the completion from the text field.
+     */
+    public final void uninstall() {
+        hide();
+        cancelPending();
+        textField.getDocument().removeDocumentListener(documentListener);
+        textField.removeKeyListener(keyListener);
+        textField.removeFocusListener(focusListener);
+    }
+
+    /**
+     * Returns the names starting with a prefix ignoring the case.
+     * 
+     * @param sorted
+     *            Names sorted with <code>String.CASE_INSENSITIVE_ORDER</code>.
+     * @param prefix
+     *            Prefix to find.
+     * @param max
+     *            Maximum number of names to return.
+     * 
+     * @return Matching names in the sorted order.
+     */
+    static String[] complete(final String[] sorted, final String prefix, final int max) {
+        // Binary search for the first name not less than the prefix
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (String.CASE_INSENSITIVE_ORDER.compare(sorted[mid], prefix) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        // All names with the prefix follow directly
+        int end = low;
+        while ((end < sorted.length) && (end - low < max)
+                && sorted[end].regionMatches(true, 0, prefix, 0, prefix.length())) {
+            end++;
+        }
+        final String[] result = new String[end - low];
+        System.arraycopy(sorted, low, result, 0, result.length);
+        return result;
+    }
+
+    private void update() {
+        if (!textField.isFocusOwner()) {
+            hide();
+            return;
+        }
+        final String text = textField.getText();
+        final int idx = Math.max(text.lastIndexOf('/'), text.lastIndexOf(File.separatorChar));
+        if (idx < 0) {
+            hide();
+            return;
+        }
+        final File dir = new File(text.substring(0, idx + 1));
+        if (dir.equals(parent)) {
+            base = text.substring(0, idx + 1);
+            show(text.substring(idx + 1));
+        } else {
+            hide();
+            request(dir);
+        }
+    }
+
+    private void request(final File dir) {
+        if (dir.equals(pendingParent)) {
+            return;
+        }
+        cancelPending();
+        pendingParent = dir;
+        pendingTask = new Runnable() {
+            public void run() {
+                final File[] subdirs = cache.list(dir);
+                SwingUtilities.invokeLater(new Runnable() {
+                    public void run() {
+                        listed(dir, subdirs);
+                    }
+                });
+            }
+        };
+        QUEUE.execute(pendingTask);
+    }
+
+    private void cancelPending() {
+        if (pendingTask != null) {
+            QUEUE.remove(pendingTask);
+            pendingTask = null;
+            pendingParent = null;
+        }
+    }
+
+    private void listed(final File dir, final File[] subdirs) {
+        if (!dir.equals(pendingParent)) {
+            // The user typed another directory in the meantime
+            return;
+        }
+        pendingTask = null;
+        pendingParent = null;
+        parent = dir;
+        if (subdirs == null) {
+            names = EMPTY;
+        } else {
+            names = new String[subdirs.length];
+            for (int i = 0; i < subdirs.length; i++) {
+                names[i] = subdirs[i].getName();
+            }
+        }
+        update();
+    }
+
+    private void show(final String prefix) {
+        final String[] matches = complete(names, prefix, MAX_SUGGESTIONS);
+        if ((matches.length == 0) || ((matches.length == 1) && matches[0].equals(prefix))) {
+            hide();
+            return;
+        }
+        list.setListData(matches);
+        list.setVisibleRowCount(Math.min(VISIBLE_ROWS, matches.length));
+        popup.setPopupSize(textField.getWidth(), popup.getPreferredSize().height);
+        if (popup.isVisible()) {
+            popup.pack();
+        } else {
+            popup.show(textField, 0, textField.getHeight());
+        }
+    }
+
+    private void hide() {
+        if (popup.isVisible()) {
+            popup.setVisible(false);
+        }
+    }
+
+    private boolean handleKey(final int keyCode) {
+        final int size = list.getModel().getSize();
+        switch (keyCode) {
+        case KeyEvent.VK_DOWN:
+            list.setSelectedIndex(Math.min(list.getSelectedIndex() + 1, size - 1));
+            list.ensureIndexIsVisible(list.getSelectedIndex());
+            return true;
+        case KeyEvent.VK_UP:
+            list.setSelectedIndex(Math.max(list.getSelectedIndex() - 1, 0));
+            list.ensureIndexIsVisible(list.getSelectedIndex());
+            return true;
+        case KeyEvent.VK_ENTER:
+            accept(Math.max(list.getSelectedIndex(), 0));
+            return true;
+        case KeyEvent.VK_ESCAPE:
+            hide();
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void accept(final int index) {
+        if ((index < 0) || (index >= list.getModel().getSize()) || (base == null)) {
+            return;
+        }
+        final String name = (String) list.getModel().getElementAt(index);
+        hide();
+        // Continues with the content of the selected directory
+        textField.setText(base + name + File.separator);
+    }
+
+}
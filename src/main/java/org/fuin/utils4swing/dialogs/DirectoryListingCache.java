@@ -0,0 +1,358 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.dialogs;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Bounded LRU cache for the sub directories of a directory. Used by
+ * {@link DirectoryTreePanel} so reopening a dialog on the same hierarchy
+ * doesn't list the file system again. Without a
+ * {@link DirectoryListingWatcher} an entry is only used if the last
+ * modification time of the directory is unchanged. With a watcher the entry is
+ * used without touching the file system until the watcher invalidates it.
+ * This class is thread safe.
+ */
+public final class DirectoryListingCache {
+
+    /** Default maximum number of cached directories. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    private static final DirectoryListingCache DEFAULT = new DirectoryListingCache(
+            DEFAULT_MAX_ENTRIES);
+
+    private final int maxEntries;
+
+    private final Map entries;
+
+    /** Directory - Boolean if invalidated while the watch was registered. */
+    private final Map registering = new HashMap();
+
+    private DirectoryListingWatcher watcher = null;
+
+    private long hitCount = 0;
+
+    private long missCount = 0;
+
+    /**
+     * Constructor with size.
+     * 
+     * @param maxEntries
+     *            Maximum number of cached directories - Must be greater than
+     *            zero.
+     */
+    public DirectoryListingCache(final int maxEntries) {
+        super();
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("The argument 'maxEntries' must be > 0: "
+                    + maxEntries);
+        }
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cache shared by all directory trees.
+     * 
+     * @return Default cache.
+     */
+    public static DirectoryListingCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Returns the maximum number of cached directories.
+     * 
+     * @return Number of directories.
+     */
+    public final int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Sets the watcher. Directories already in the cache are not watched and
+     * will still be checked with their last modification time.
+     * 
+     * @param watcher
+     *            Watcher or <code>null</code> to check the last modification
+     *            time of the directories.
+     */
+    public final synchronized void setWatcher(final DirectoryListingWatcher watcher) {
+        this.watcher = watcher;
+    }
+
+    /**
+     * Returns the watcher.
+     * 
+     * @return Watcher or <code>null</code>.
+     */
+    public final synchronized DirectoryListingWatcher getWatcher() {
+        return watcher;
+    }
+
+    /**
+     * Returns the cached sub directories of a directory.
+     * 
+     * @param dir
+     *            Directory.
+     * 
+     * @return Sub directories or <code>null</code> if the directory is not
+     *         cached or has changed.
+     */
+    public final File[] get(final File dir) {
+        Utils4J.checkNotNull("dir", dir);
+        final Entry entry;
+        synchronized (this) {
+            entry = (Entry) entries.get(dir);
+            if ((entry == null) || entry.watched) {
+                count(entry != null);
+                return (entry == null) ? null : entry.subdirs;
+            }
+        }
+        // Not watched - Ask the file system outside the lock
+        if (dir.lastModified() == entry.lastModified) {
+            synchronized (this) {
+                count(true);
+            }
+            return entry.subdirs;
+        }
+        invalidate(dir);
+        synchronized (this) {
+            count(false);
+        }
+        return null;
+    }
+
+    private void count(final boolean hit) {
+        if (hit) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+    }
+
+    /**
+     * Returns the sub directories of a directory from the cache or lists and
+     * caches them. This may block on slow drives - Don't call it in the EDT.
+     * 
+     * @param dir
+     *            Directory.
+     * 
+     * @return Sub directories sorted case-insensitive by name or
+     *         <code>null</code> if the directory cannot be read.
+     */
+    public final File[] list(final File dir) {
+        final File[] cached = get(dir);
+        if (cached != null) {
+            return cached;
+        }
+        final long lastModified = dir.lastModified();
+        final String[] names = dir.list();
+        if (names == null) {
+            return null;
+        }
+        Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+        final List subdirs = new ArrayList();
+        for (int i = 0; i < names.length; i++) {
+            final File file = new File(dir, names[i]);
+            if (file.isDirectory()) {
+                subdirs.add(file);
+            }
+        }
+        final File[] result = (File[]) subdirs.toArray(new File[subdirs.size()]);
+        put(dir, lastModified, result);
+        return result;
+    }
+
+    /**
+     * Adds the sub directories of a directory. The modification time must be
+     * read <b>before</b> the directory is listed, so a change while listing
+     * is detected.
+     * 
+     * @param dir
+     *            Directory.
+     * @param lastModified
+     *            Last modification time of the directory before it was
+     *            listed.
+     * @param subdirs
+     *            Sub directories.
+     */
+    public final void put(final File dir, final long lastModified, final File[] subdirs) {
+        Utils4J.checkNotNull("dir", dir);
+        Utils4J.checkNotNull("subdirs", subdirs);
+        final DirectoryListingWatcher w = getWatcher();
+        synchronized (this) {
+            registering.put(dir, Boolean.FALSE);
+        }
+        final boolean watched;
+        try {
+            watched = (w != null) && w.watch(dir);
+        } catch (final RuntimeException ex) {
+            synchronized (this) {
+                registering.remove(dir);
+            }
+            throw ex;
+        }
+        // Ask the file system outside the lock
+        final boolean changed = watched && (dir.lastModified() != lastModified);
+        final List evicted = new ArrayList();
+        synchronized (this) {
+            // An event may arrive before the entry exists
+            final boolean dirty = Boolean.TRUE.equals(registering.remove(dir));
+            if (watched && (dirty || changed)) {
+                // Changed while listing or registering the watcher
+                entries.remove(dir);
+                evicted.add(dir);
+            } else {
+                final Entry old = (Entry) entries.put(dir, new Entry(subdirs, lastModified,
+                        watched));
+                if ((old != null) && old.watched && !watched) {
+                    evicted.add(dir);
+                }
+                final Iterator it = entries.entrySet().iterator();
+                while ((entries.size() > maxEntries) && it.hasNext()) {
+                    final Map.Entry eldest = (Map.Entry) it.next();
+                    it.remove();
+                    if (((Entry) eldest.getValue()).watched) {
+                        evicted.add(eldest.getKey());
+                    }
+                }
+            }
+        }
+        unwatch(w, evicted);
+    }
+
+    /**
+     * Removes a directory from the cache.
+     * 
+     * @param dir
+     *            Directory that has changed.
+     */
+    public final void invalidate(final File dir) {
+        Utils4J.checkNotNull("dir", dir);
+        final DirectoryListingWatcher w;
+        final Entry entry;
+        synchronized (this) {
+            w = watcher;
+            entry = (Entry) entries.remove(dir);
+            if (registering.containsKey(dir)) {
+                registering.put(dir, Boolean.TRUE);
+            }
+        }
+        if ((entry != null) && entry.watched && (w != null)) {
+            w.unwatch(dir);
+        }
+    }
+
+    /**
+     * Removes all directories from the cache.
+     */
+    public final void clear() {
+        final List evicted = new ArrayList();
+        final DirectoryListingWatcher w;
+        synchronized (this) {
+            w = watcher;
+            final Iterator it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                final Map.Entry e = (Map.Entry) it.next();
+                if (((Entry) e.getValue()).watched) {
+                    evicted.add(e.getKey());
+                }
+            }
+            entries.clear();
+        }
+        unwatch(w, evicted);
+    }
+
+    private static void unwatch(final DirectoryListingWatcher w, final List dirs) {
+        if (w == null) {
+            return;
+        }
+        for (int i = 0; i < dirs.size(); i++) {
+            w.unwatch((File) dirs.get(i));
+        }
+    }
+
+    /**
+     * Returns the number of cached directories.
+     * 
+     * @return Number of directories.
+     */
+    public final synchronized int getSize() {
+        return entries.size();
+    }
+
+    /**
+     * Returns the number of successful lookups.
+     * 
+     * @return Number of hits.
+     */
+    public final synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Returns the number of lookups that had to list the file system.
+     * 
+     * @return Number of misses.
+     */
+    public final synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Cached sub directories of one directory.
+     */
+    private static final class Entry {
+
+        private final File[] subdirs;
+
+        private final long lastModified;
+
+        private final boolean watched;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param subdirs
+         *            Sub directories.
+         * @param lastModified
+         *            Modification time of the directory.
+         * @param watched
+         *            If the directory is watched <code>true</code> else
+         *            <code>false</code>.
+         */
+        public Entry(final File[] subdirs, final long lastModified, final boolean watched) {
+            super();
+            this.subdirs = subdirs;
+            this.lastModified = lastModified;
+            this.watched = watched;
+        }
+
+    }
+
+}
@@ -0,0 +1,49 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.dialogs;
+
+import java.io.File;
+
+/**
+ * Watches directories cached by a {@link DirectoryListingCache} and calls
+ * {@link DirectoryListingCache#invalidate(File)} as soon as the content of a
+ * watched directory changes.
+ */
+public interface DirectoryListingWatcher {
+
+    /**
+     * Starts watching a directory.
+     * 
+     * @param dir
+     *            Directory that was added to the cache.
+     * 
+     * @return If the directory is watched <code>true</code> else
+     *         <code>false</code> (The cache will check the last modification
+     *         time of the directory instead).
+     */
+    public boolean watch(File dir);
+
+    /**
+     * Stops watching a directory.
+     * 
+     * @param dir
+     *            Directory that was removed from the cache.
+     */
+    public void unwatch(File dir);
+
+}
@@ -25,8 +25,12 @@ import java.awt.GridBagLayout;
 import java.awt.Insets;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
 import java.io.File;
 import java.io.IOException;
+import java.text.DecimalFormat;
+import java.text.NumberFormat;
 
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
@@ -35,8 +39,12 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JTextField;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 
 import org.fuin.utils4j.Utils4J;
+import org.fuin.utils4swing.common.WorkerQueue;
 
 /**
  * Panel for directory selection.
@@ -45,6 +53,22 @@ public class DirectorySelectionPanel extends JPanel {
 
     private static final long serialVersionUID = 1L;
 
+    /** Milliseconds without changes before a new scan starts. */
+    private static final int RESTART_DELAY = 300;
+
+    /** Milliseconds between two updates of the statistics label. */
+    private static final int DISPLAY_DELAY = 250;
+
+    /** Height of the panel with one extra line below the directory. */
+    private static final int HEIGHT = 130;
+
+    private static final int LINE_HEIGHT = 20;
+
+    private static final WorkerQueue VALIDATOR = new WorkerQueue("DirectoryValidation", 2);
+
+    private static final String[] SIZE_UNITS = new String[] { "bytes", "KB", "MB", "GB",
+            "TB" };
+
     private JPanel panelTitle = null;
 
     private JPanel panelButtons = null;
@@ -65,6 +89,32 @@ public class DirectorySelectionPanel extends JPanel {
 
     private JCheckBox checkBoxIncludeSubdirs = null;
 
+    private boolean useDirectoryTree = false;
+
+    private JLabel labelStatistics = null;
+
+    private boolean statisticsVisible = false;
+
+    private transient SubtreeScanner scanner = null;
+
+    private transient Timer timerRestart = null;
+
+    private transient Timer timerDisplay = null;
+
+    private transient DirectoryCompleter completer = null;
+
+    private JLabel labelValidation = null;
+
+    private boolean validationEnabled = false;
+
+    private long expectedSize = 0;
+
+    private transient Timer timerValidate = null;
+
+    private transient ValidationTask validationTask = null;
+
+    private transient DirectoryValidation validation = null;
+
     /**
      * This is the constructor with parent.
      * 
@@ -80,8 +130,8 @@ public class DirectorySelectionPanel extends JPanel {
 
     private void initialize() {
         this.setLayout(new BorderLayout());
-        this.setSize(450, 130);
-        this.setPreferredSize(new Dimension(450, 130));
+        this.setSize(450, HEIGHT);
+        this.setPreferredSize(new Dimension(450, HEIGHT));
         this.add(getPanelTitle(), BorderLayout.NORTH);
         this.add(getPanelButtons(), BorderLayout.SOUTH);
         this.add(getPanelDirectory(), BorderLayout.CENTER);
@@ -137,10 +187,24 @@ public class DirectorySelectionPanel extends JPanel {
             gridBagConstraints.weightx = 1.0;
             gridBagConstraints.insets = new Insets(0, 5, 0, 5);
             gridBagConstraints.gridx = 0;
+            final GridBagConstraints gridBagConstraints2 = new GridBagConstraints();
+            gridBagConstraints2.gridx = 0;
+            gridBagConstraints2.gridy = 1;
+            gridBagConstraints2.gridwidth = 2;
+            gridBagConstraints2.anchor = GridBagConstraints.WEST;
+            gridBagConstraints2.insets = new Insets(2, 5, 0, 5);
+            final GridBagConstraints gridBagConstraints3 = new GridBagConstraints();
+            gridBagConstraints3.gridx = 0;
+            gridBagConstraints3.gridy = 2;
+            gridBagConstraints3.gridwidth = 2;
+            gridBagConstraints3.anchor = GridBagConstraints.WEST;
+            gridBagConstraints3.insets = new Insets(2, 5, 0, 5);
             panelDirectory = new JPanel();
             panelDirectory.setLayout(new GridBagLayout());
             panelDirectory.add(getTextFieldDirectory(), gridBagConstraints);
             panelDirectory.add(getButtonDirectory(), gridBagConstraints1);
+            panelDirectory.add(getLabelStatistics(), gridBagConstraints2);
+            panelDirectory.add(getLabelValidation(), gridBagConstraints3);
         }
         return panelDirectory;
     }
@@ -190,6 +254,19 @@ public class DirectorySelectionPanel extends JPanel {
     private JTextField getTextFieldDirectory() {
         if (textFieldDirectory == null) {
             textFieldDirectory = new JTextField();
+            textFieldDirectory.getDocument().addDocumentListener(new DocumentListener() {
+                public void insertUpdate(final DocumentEvent e) {
+                    directoryChanged();
+                }
+
+                public void removeUpdate(final DocumentEvent e) {
+                    directoryChanged();
+                }
+
+                public void changedUpdate(final DocumentEvent e) {
+                    directoryChanged();
+                }
+            });
         }
         return textFieldDirectory;
     }
@@ -214,21 +291,227 @@ public class DirectorySelectionPanel extends JPanel {
             checkBoxIncludeSubdirs.setText("Include Subdirectories");
             checkBoxIncludeSubdirs.setPreferredSize(new Dimension(250, 24));
             checkBoxIncludeSubdirs.setVisible(true);
+            checkBoxIncludeSubdirs.addItemListener(new ItemListener() {
+                public void itemStateChanged(final ItemEvent e) {
+                    statisticsChanged();
+                }
+            });
         }
         return checkBoxIncludeSubdirs;
     }
 
+    private JLabel getLabelStatistics() {
+        if (labelStatistics == null) {
+            labelStatistics = new JLabel();
+            labelStatistics.setText(" ");
+            labelStatistics.setVisible(false);
+        }
+        return labelStatistics;
+    }
+
+    private JLabel getLabelValidation() {
+        if (labelValidation == null) {
+            labelValidation = new JLabel();
+            labelValidation.setText(" ");
+            labelValidation.setVisible(false);
+        }
+        return labelValidation;
+    }
+
+    private Timer getTimerValidate() {
+        if (timerValidate == null) {
+            timerValidate = new Timer(RESTART_DELAY, new ActionListener() {
+                public void actionPerformed(final ActionEvent e) {
+                    startValidation();
+                }
+            });
+            timerValidate.setRepeats(false);
+        }
+        return timerValidate;
+    }
+
+    private void updatePreferredSize() {
+        final int lines = (statisticsVisible ? 1 : 0) + (validationEnabled ? 1 : 0);
+        final int height = HEIGHT + Math.max(0, lines - 1) * LINE_HEIGHT;
+        setPreferredSize(new Dimension(getPreferredSize().width, height));
+        revalidate();
+    }
+
+    private void directoryChanged() {
+        statisticsChanged();
+        validationChanged();
+    }
+
+    private Timer getTimerRestart() {
+        if (timerRestart == null) {
+            timerRestart = new Timer(RESTART_DELAY, new ActionListener() {
+                public void actionPerformed(final ActionEvent e) {
+                    restartScan();
+                }
+            });
+            timerRestart.setRepeats(false);
+        }
+        return timerRestart;
+    }
+
+    private Timer getTimerDisplay() {
+        if (timerDisplay == null) {
+            timerDisplay = new Timer(DISPLAY_DELAY, new ActionListener() {
+                public void actionPerformed(final ActionEvent e) {
+                    showStatistics();
+                }
+            });
+        }
+        return timerDisplay;
+    }
+
+    private void statisticsChanged() {
+        if (statisticsVisible) {
+            // Wait until the user stops typing
+            getTimerRestart().restart();
+        }
+    }
+
+    private void restartScan() {
+        stopScan();
+        final String dir = getDirectory();
+        if (dir.length() == 0) {
+            getLabelStatistics().setText(" ");
+            return;
+        }
+        scanner = new SubtreeScanner(new File(dir), isIncludeSubdirs());
+        scanner.start();
+        getTimerDisplay().start();
+        showStatistics();
+    }
+
+    private void stopScan() {
+        getTimerRestart().stop();
+        getTimerDisplay().stop();
+        if (scanner != null) {
+            scanner.cancel();
+            scanner = null;
+        }
+    }
+
+    private void showStatistics() {
+        if (scanner == null) {
+            return;
+        }
+        final boolean done = scanner.isDone();
+        if (done) {
+            getTimerDisplay().stop();
+            if (!scanner.isValid()) {
+                getLabelStatistics().setText("Directory not found");
+                return;
+            }
+        }
+        final String text = NumberFormat.getIntegerInstance().format(scanner.getFileCount())
+                + " files, " + formatSize(scanner.getTotalSize());
+        if (done) {
+            getLabelStatistics().setText(text);
+        } else {
+            getLabelStatistics().setText(text + " ...");
+        }
+    }
+
+    private void validationChanged() {
+        if (validationEnabled) {
+            cancelValidation();
+            getButtonOK().setEnabled(false);
+            getLabelValidation().setText("Checking directory ...");
+            // Wait until the user stops typing
+            getTimerValidate().restart();
+        }
+    }
+
+    private void startValidation() {
+        cancelValidation();
+        final String dir = getDirectory();
+        if (dir.length() == 0) {
+            getLabelValidation().setText("Please enter a directory");
+            return;
+        }
+        validationTask = new ValidationTask(new File(dir), expectedSize);
+        VALIDATOR.execute(validationTask);
+    }
+
+    private void cancelValidation() {
+        getTimerValidate().stop();
+        if (validationTask != null) {
+            VALIDATOR.remove(validationTask);
+            validationTask = null;
+        }
+        validation = null;
+    }
+
+    private void validated(final ValidationTask task, final DirectoryValidation result) {
+        if (task != validationTask) {
+            // Directory changed in the meantime
+            return;
+        }
+        validationTask = null;
+        validation = result;
+        getButtonOK().setEnabled(result.isValid());
+        getLabelValidation().setText(getMessage(result));
+    }
+
+    private static String getMessage(final DirectoryValidation result) {
+        switch (result.getStatus()) {
+        case DirectoryValidation.STATUS_VALID:
+            if (result.getUsableSpace() == DirectoryValidation.UNKNOWN) {
+                return "Directory OK";
+            }
+            return "Directory OK - " + formatSize(result.getUsableSpace()) + " free";
+        case DirectoryValidation.STATUS_NOT_FOUND:
+            return "Directory not found";
+        case DirectoryValidation.STATUS_NOT_A_DIRECTORY:
+            return "Not a directory";
+        case DirectoryValidation.STATUS_NOT_WRITABLE:
+            return "Directory is not writable";
+        case DirectoryValidation.STATUS_NOT_ENOUGH_SPACE:
+            return "Not enough space: " + formatSize(result.getUsableSpace()) + " free, "
+                    + formatSize(result.getExpectedSize()) + " required";
+        default:
+            return "Unknown status: " + result.getStatus();
+        }
+    }
+
+    private static String formatSize(final long size) {
+        if (size < 1024) {
+            return size + " " + SIZE_UNITS[0];
+        }
+        double value = size;
+        int unit = 0;
+        while ((value >= 1024) && (unit < SIZE_UNITS.length - 1)) {
+            value = value / 1024;
+            unit++;
+        }
+        return new DecimalFormat("0.0").format(value) + " " + SIZE_UNITS[unit];
+    }
+
     private void selectDirectory() {
-        final JFileChooser chooser = new JFileChooser();
-        chooser.setCurrentDirectory(new File(getTextFieldDirectory().getText()));
-        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
-        chooser.setAcceptAllFileFilterUsed(false);
-        if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-            try {
-                setDirectoryIntern(chooser.getSelectedFile().getCanonicalPath());
-            } catch (final IOException e) {
-                setDirectoryIntern(chooser.getSelectedFile().toString());
+        if (useDirectoryTree) {
+            final String text = getTextFieldDirectory().getText().trim();
+            final File dir = DirectoryTreePanel.showDialog(this, getLabelTitle().getText(),
+                    (text.length() == 0) ? null : new File(text));
+            if (dir != null) {
+                setDirectoryIntern(dir.getPath());
+            }
+            return;
+        }
+        final JFileChooser chooser = DirectoryChooserCache.acquire();
+        try {
+            chooser.setCurrentDirectory(new File(getTextFieldDirectory().getText()));
+            if (chooser.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
+                try {
+                    setDirectoryIntern(chooser.getSelectedFile().getCanonicalPath());
+                } catch (final IOException e) {
+                    setDirectoryIntern(chooser.getSelectedFile().toString());
+                }
             }
+        } finally {
+            DirectoryChooserCache.release(chooser);
         }
     }
 
@@ -314,6 +597,180 @@ public class DirectorySelectionPanel extends JPanel {
         }
     }
 
+    /**
+     * Determines if the "..." button opens a {@link DirectoryTreePanel} instead
+     * of a <code>JFileChooser</code>. The tree loads the directories in the
+     * background and stays responsive even for very large directories or slow
+     * network drives. Must be called in the EDT.
+     * 
+     * @param useDirectoryTree
+     *            If the directory tree should be used <code>true</code> else
+     *            <code>false</code> (default).
+     */
+    public final void setUseDirectoryTree(final boolean useDirectoryTree) {
+        this.useDirectoryTree = useDirectoryTree;
+    }
+
+    /**
+     * Returns if the "..." button opens a {@link DirectoryTreePanel} instead of
+     * a <code>JFileChooser</code>.
+     * 
+     * @return If the directory tree is used <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final boolean isUseDirectoryTree() {
+        return useDirectoryTree;
+    }
+
+    /**
+     * Shows the number of files and their total size below the directory.
+     * The directory is scanned in the background and the scan is restarted
+     * when the directory or the "Include subdirectories" checkbox changes.
+     * Must be called in the EDT.
+     * 
+     * @param statisticsVisible
+     *            If the statistics should be visible <code>true</code> else
+     *            <code>false</code> (default).
+     */
+    public final void setStatisticsVisible(final boolean statisticsVisible) {
+        this.statisticsVisible = statisticsVisible;
+        getLabelStatistics().setVisible(statisticsVisible);
+        updatePreferredSize();
+        if (statisticsVisible) {
+            restartScan();
+        } else {
+            stopScan();
+        }
+    }
+
+    /**
+     * Returns if the number of files and their total size are shown.
+     * 
+     * @return If the statistics are visible <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final boolean isStatisticsVisible() {
+        return statisticsVisible;
+    }
+
+    /**
+     * Checks the directory in the background after every change: It must
+     * exist, be writable and have at least the expected free space. The 'OK'
+     * button is only enabled if the check succeeded and a label below the
+     * directory shows the result. Must be called in the EDT.
+     * 
+     * @param validationEnabled
+     *            If the directory should be checked <code>true</code> else
+     *            <code>false</code> (default).
+     */
+    public final void setValidationEnabled(final boolean validationEnabled) {
+        this.validationEnabled = validationEnabled;
+        getLabelValidation().setVisible(validationEnabled);
+        updatePreferredSize();
+        if (validationEnabled) {
+            validationChanged();
+            startValidation();
+        } else {
+            cancelValidation();
+            getButtonOK().setEnabled(true);
+        }
+    }
+
+    /**
+     * Returns if the directory is checked in the background.
+     * 
+     * @return If the validation is active <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final boolean isValidationEnabled() {
+        return validationEnabled;
+    }
+
+    /**
+     * Sets the number of bytes the caller wants to write into the directory.
+     * Must be called in the EDT.
+     * 
+     * @param expectedSize
+     *            Required free space - Zero or less skips the free space
+     *            check.
+     */
+    public final void setExpectedSize(final long expectedSize) {
+        this.expectedSize = expectedSize;
+        validationChanged();
+    }
+
+    /**
+     * Returns the number of bytes the caller wants to write into the
+     * directory.
+     * 
+     * @return Required free space - Zero or less if the space is not checked.
+     */
+    public final long getExpectedSize() {
+        return expectedSize;
+    }
+
+    /**
+     * Returns the result of the last completed check. Must be called in the
+     * EDT.
+     * 
+     * @return Result or <code>null</code> if the validation is disabled or
+     *         still running.
+     */
+    public final DirectoryValidation getValidation() {
+        return validation;
+    }
+
+    /**
+     * Shows the matching sub directories in a popup while the user types a
+     * path. The directories are listed in a background thread - See
+     * {@link DirectoryCompleter}. Must be called in the EDT.
+     * 
+     * @param autoCompletion
+     *            If the completion should be active <code>true</code> else
+     *            <code>false</code> (default).
+     */
+    public final void setAutoCompletion(final boolean autoCompletion) {
+        if (autoCompletion && (completer == null)) {
+            completer = new DirectoryCompleter(getTextFieldDirectory());
+        } else if (!autoCompletion && (completer != null)) {
+            completer.uninstall();
+            completer = null;
+        }
+    }
+
+    /**
+     * Returns if the matching sub directories are shown while the user types
+     * a path.
+     * 
+     * @return If the completion is active <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final boolean isAutoCompletion() {
+        return completer != null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addNotify() {
+        super.addNotify();
+        if (statisticsVisible && (scanner == null)) {
+            restartScan();
+        }
+        if (validationEnabled && (validation == null) && (validationTask == null)) {
+            validationChanged();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void removeNotify() {
+        stopScan();
+        cancelValidation();
+        super.removeNotify();
+    }
+
     /**
      * Returns the currently selected directory.
      * 
@@ -337,4 +794,42 @@ public class DirectorySelectionPanel extends JPanel {
         // Dummy method to satisfy Checkstyle's empty block check...
     }
 
+    /**
+     * Checks a directory in a background thread and reports the result to the
+     * panel in the EDT.
+     */
+    private final class ValidationTask implements Runnable {
+
+        private final File dir;
+
+        private final long size;
+
+        /**
+         * Constructor with directory and expected size.
+         * 
+         * @param dir
+         *            Directory to check.
+         * @param size
+         *            Required free space.
+         */
+        public ValidationTask(final File dir, final long size) {
+            super();
+            this.dir = dir;
+            this.size = size;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final void run() {
+            final DirectoryValidation result = DirectoryValidation.validate(dir, size);
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    validated(ValidationTask.this, result);
+                }
+            });
+        }
+
+    }
+
 } // @jve:decl-index=0:visual-constraint="10,10"
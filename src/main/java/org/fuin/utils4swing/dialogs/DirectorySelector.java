@@ -49,6 +49,18 @@ public class DirectorySelector {
 
 	private final boolean showIncludeSubdirs;
 
+	private boolean useDirectoryTree = false;
+
+	private boolean statisticsVisible = false;
+
+	private boolean autoCompletion = false;
+
+	private boolean prewarmFileChooser = false;
+
+	private boolean validationEnabled = false;
+
+	private long expectedSize = 0;
+
 	/**
 	 * Constructor with title and start directory. The "include sub directories"
 	 * checkbox is not visible.
@@ -96,6 +108,75 @@ public class DirectorySelector {
 
 	}
 
+	/**
+	 * Determines if the directory is selected with a {@link DirectoryTreePanel}
+	 * instead of a <code>JFileChooser</code>. Must be called before
+	 * {@link #show()}.
+	 * 
+	 * @param useDirectoryTree
+	 *            If the directory tree should be used <code>true</code> else
+	 *            <code>false</code> (default).
+	 */
+	public final void setUseDirectoryTree(final boolean useDirectoryTree) {
+		this.useDirectoryTree = useDirectoryTree;
+	}
+
+	/**
+	 * Determines if the number of files and their total size are shown for the
+	 * selected directory. Must be called before {@link #show()}.
+	 * 
+	 * @param statisticsVisible
+	 *            If the statistics should be visible <code>true</code> else
+	 *            <code>false</code> (default).
+	 */
+	public final void setStatisticsVisible(final boolean statisticsVisible) {
+		this.statisticsVisible = statisticsVisible;
+	}
+
+	/**
+	 * Determines if the matching sub directories are shown in a popup while the
+	 * user types a path. Must be called before {@link #show()}.
+	 * 
+	 * @param autoCompletion
+	 *            If the completion should be active <code>true</code> else
+	 *            <code>false</code> (default).
+	 */
+	public final void setAutoCompletion(final boolean autoCompletion) {
+		this.autoCompletion = autoCompletion;
+	}
+
+	/**
+	 * Determines if the <code>JFileChooser</code> is created in the background
+	 * right after the dialog is shown, so the first click on "..." opens it
+	 * without delay. See {@link DirectoryChooserCache}. Must be called before
+	 * {@link #show()}.
+	 * 
+	 * @param prewarmFileChooser
+	 *            If the chooser should be created in advance <code>true</code>
+	 *            else <code>false</code> (default).
+	 */
+	public final void setPrewarmFileChooser(final boolean prewarmFileChooser) {
+		this.prewarmFileChooser = prewarmFileChooser;
+	}
+
+	/**
+	 * Determines if the directory is checked in the background before the user
+	 * can press 'OK': It must exist, be writable and have enough free space.
+	 * Must be called before {@link #show()}.
+	 * 
+	 * @param validationEnabled
+	 *            If the directory should be checked <code>true</code> else
+	 *            <code>false</code> (default).
+	 * @param expectedSize
+	 *            Number of bytes that will be written into the directory -
+	 *            Zero or less skips the free space check.
+	 */
+	public final void setValidation(final boolean validationEnabled,
+			final long expectedSize) {
+		this.validationEnabled = validationEnabled;
+		this.expectedSize = expectedSize;
+	}
+
 	/**
 	 * Show the monitor dialog.If called outside the EDT this method will switch
 	 * to the UI thread using
@@ -117,6 +198,9 @@ public class DirectorySelector {
 					ignore();
 				}
 			}
+			if (prewarmFileChooser && !useDirectoryTree) {
+				DirectoryChooserCache.prewarm();
+			}
 		} else {
 			throw new IllegalStateException("This object cannot be reused!");
 		}
@@ -127,6 +211,11 @@ public class DirectorySelector {
 		panel.setTitle(title);
 		panel.setDirectory(directory);
 		panel.setIncludeSubdirsVisible(showIncludeSubdirs);
+		panel.setUseDirectoryTree(useDirectoryTree);
+		panel.setStatisticsVisible(statisticsVisible);
+		panel.setAutoCompletion(autoCompletion);
+		panel.setExpectedSize(expectedSize);
+		panel.setValidationEnabled(validationEnabled);
 		frame = Utils4Swing.createShowAndPosition(title, panel, false,
 				new ScreenCenterPositioner());
 		frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
@@ -215,7 +304,9 @@ public class DirectorySelector {
 	/**
 	 * Blocks the current thread and waits for the result of the selection
 	 * dialog. WARNING: Don't use this inside the Event Dispatching Thread
-	 * (EDT)! This is only for usage outside the UI thread.
+	 * (EDT)! This is only for usage outside the UI thread. If the thread is
+	 * interrupted while waiting, the dialog is closed, the interrupt flag is set
+	 * again and a <code>CanceledException</code> is thrown.
 	 * 
 	 * @param title
 	 *            Title to display for the dialog.
@@ -228,76 +319,157 @@ public class DirectorySelector {
 	 * @return Selection result.
 	 * 
 	 * @throws CanceledException
-	 *             The user canceled the dialog.
+	 *             The user canceled the dialog or the thread was interrupted.
 	 */
 	public static Result selectDirectory(final String title,
 			final String directory, final boolean showIncludeSubdirs)
 			throws CanceledException {
 
-		/**
-		 * Gets informed about the result.
-		 */
-		class MyListener implements DirectorySelectorListener {
+		final ResultFuture future = selectDirectoryAsync(title, directory,
+				showIncludeSubdirs);
+		try {
+			return future.get();
+		} catch (final InterruptedException ex) {
+			future.cancel();
+			Thread.currentThread().interrupt();
+			throw new CanceledException();
+		}
 
-			private volatile String directory = null;
+	}
 
-			private volatile boolean includeSubdirs = false;
+	/**
+	 * Shows the selection dialog and returns immediately. The result can be
+	 * fetched later from the returned object. Can be used inside and outside
+	 * the Event Dispatching Thread (EDT) - But don't call one of the blocking
+	 * methods of the result inside the EDT.
+	 * 
+	 * @param title
+	 *            Title to display for the dialog.
+	 * @param directory
+	 *            Initial directory.
+	 * @param showIncludeSubdirs
+	 *            If the checkbox "include subdirectories" should be visible
+	 *            <code>true</code> else <code>false</code>.
+	 * 
+	 * @return Pending selection result.
+	 */
+	public static ResultFuture selectDirectoryAsync(final String title,
+			final String directory, final boolean showIncludeSubdirs) {
+		final ResultFuture future = new ResultFuture(title, directory,
+				showIncludeSubdirs);
+		future.selector.show();
+		return future;
+	}
 
-			/**
-			 * Selected directory.
-			 * 
-			 * @return Directory.
-			 */
-			public String getDirectory() {
-				return directory;
-			}
+	/**
+	 * Result of a selection dialog that may still be open.
+	 */
+	public static final class ResultFuture {
 
-			/**
-			 * Returns if sub directories should be included.
-			 * 
-			 * @return If sub directories are included <code>true</code> else
-			 *         <code>false</code>.
-			 */
-			public boolean isIncludeSubdirs() {
-				return includeSubdirs;
-			}
+		private final DirectorySelector selector;
 
-			/**
-			 * {@inheritDoc}
-			 */
-			public void canceled() {
-				this.directory = "";
-			}
+		private boolean done = false;
+
+		private Result result = null;
 
-			/**
-			 * {@inheritDoc}
-			 */
-			public void finished(final String directory,
-					final boolean includeSubdirs) {
-				this.directory = directory;
-				this.includeSubdirs = includeSubdirs;
+		/**
+		 * Constructor with dialog data.
+		 * 
+		 * @param title
+		 *            Title to display for the dialog.
+		 * @param directory
+		 *            Initial directory.
+		 * @param showIncludeSubdirs
+		 *            If the checkbox "include subdirectories" should be visible
+		 *            <code>true</code> else <code>false</code>.
+		 */
+		private ResultFuture(final String title, final String directory,
+				final boolean showIncludeSubdirs) {
+			super();
+			this.selector = new DirectorySelector(title, directory,
+					showIncludeSubdirs, new DirectorySelectorListener() {
+						public void canceled() {
+							done(null);
+						}
+
+						public void finished(final String directory,
+								final boolean includeSubdirs) {
+							done(new Result(directory, includeSubdirs));
+						}
+					});
+		}
+
+		private synchronized void done(final Result result) {
+			if (!done) {
+				this.result = result;
+				this.done = true;
+				notifyAll();
 			}
 		}
 
-		final MyListener myListener = new MyListener();
-		new DirectorySelector(title, directory, showIncludeSubdirs, myListener)
-				.show();
+		/**
+		 * Returns if the dialog was closed.
+		 * 
+		 * @return If the result is available <code>true</code> else
+		 *         <code>false</code>.
+		 */
+		public final synchronized boolean isDone() {
+			return done;
+		}
 
-		// Wait for the result
-		while (myListener.getDirectory() == null) {
-			try {
-				Thread.sleep(100);
-			} catch (InterruptedException e) {
-				ignore();
+		/**
+		 * Waits at most the given time for the dialog to be closed.
+		 * 
+		 * @param timeoutMillis
+		 *            Maximum time to wait in milliseconds.
+		 * 
+		 * @return If the result is available <code>true</code> else
+		 *         <code>false</code>.
+		 * 
+		 * @throws InterruptedException
+		 *             The thread was interrupted while waiting.
+		 */
+		public final synchronized boolean waitFor(final long timeoutMillis)
+				throws InterruptedException {
+			final long end = System.currentTimeMillis() + timeoutMillis;
+			long wait = timeoutMillis;
+			while (!done && (wait > 0)) {
+				wait(wait);
+				wait = end - System.currentTimeMillis();
 			}
+			return done;
 		}
 
-		if (myListener.getDirectory().length() == 0) {
-			throw new CanceledException();
+		/**
+		 * Waits until the dialog is closed and returns the result.
+		 * 
+		 * @return Selection result.
+		 * 
+		 * @throws CanceledException
+		 *             The user canceled the dialog.
+		 * @throws InterruptedException
+		 *             The thread was interrupted while waiting - The dialog is
+		 *             still open.
+		 */
+		public final synchronized Result get() throws CanceledException,
+				InterruptedException {
+			while (!done) {
+				wait();
+			}
+			if (result == null) {
+				throw new CanceledException();
+			}
+			return result;
 		}
 
-		return new Result(myListener.getDirectory(), myListener
-				.isIncludeSubdirs());
+		/**
+		 * Closes the dialog if it's still open. The result will be "canceled".
+		 */
+		public final void cancel() {
+			if (!isDone()) {
+				selector.cancel();
+			}
+		}
 
 	}
 
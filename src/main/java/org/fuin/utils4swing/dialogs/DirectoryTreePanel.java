@@ -0,0 +1,490 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.dialogs;
+
+import java.awt.BorderLayout;
+import java.awt.Component;
+import java.awt.Dialog;
+import java.awt.FlowLayout;
+import java.awt.Frame;
+import java.awt.Window;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.swing.JButton;
+import javax.swing.JDialog;
+import javax.swing.JPanel;
+import javax.swing.JScrollPane;
+import javax.swing.JTree;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TreeExpansionEvent;
+import javax.swing.event.TreeSelectionEvent;
+import javax.swing.event.TreeSelectionListener;
+import javax.swing.event.TreeWillExpandListener;
+import javax.swing.tree.DefaultMutableTreeNode;
+import javax.swing.tree.DefaultTreeModel;
+import javax.swing.tree.TreePath;
+import javax.swing.tree.TreeSelectionModel;
+
+import org.fuin.utils4swing.common.WorkerQueue;
+
+/**
+ * Directory tree that loads the sub directories of a node in a background
+ * thread when the node is expanded. Until the node is completely loaded it
+ * shows a "Loading..." entry and the directories found so far are added in
+ * batches. The Event Dispatch Thread (EDT) never touches the file system, so
+ * the tree stays responsive even for huge directories or slow network drives.
+ * An alternative for the <code>JFileChooser</code> in
+ * {@link DirectorySelectionPanel}.
+ */
+public class DirectoryTreePanel extends JPanel {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int BATCH_SIZE = 200;
+
+    private static final int BATCH_DELAY = 100;
+
+    private static final String LOADING_TEXT = "Loading...";
+
+    private static final WorkerQueue LOADER = new WorkerQueue("DirectoryTreeLoader", 2);
+
+    private final DirectoryListingCache cache;
+
+    private final DefaultMutableTreeNode rootNode;
+
+    private final DefaultTreeModel model;
+
+    private final JTree tree;
+
+    private File[] targetPath = null;
+
+    private DefaultMutableTreeNode targetNode = null;
+
+    private int targetDepth = 0;
+
+    /**
+     * Default constructor showing all file system roots and using the
+     * {@link DirectoryListingCache#getDefault() default cache}.
+     */
+    public DirectoryTreePanel() {
+        this(DirectoryListingCache.getDefault());
+    }
+
+    /**
+     * Constructor with cache showing all file system roots.
+     * 
+     * @param cache
+     *            Cache for directory listings - Can be <code>null</code> if
+     *            the directories should always be listed again.
+     */
+    public DirectoryTreePanel(final DirectoryListingCache cache) {
+        super(new BorderLayout());
+        this.cache = cache;
+        final File[] roots = File.listRoots();
+        final boolean singleRoot = (roots.length == 1);
+        if (singleRoot) {
+            rootNode = createNode(roots[0], roots[0].getPath());
+        } else {
+            rootNode = new DefaultMutableTreeNode("Computer", true);
+            for (int i = 0; i < roots.length; i++) {
+                rootNode.add(createNode(roots[i], roots[i].getPath()));
+            }
+        }
+        model = new DefaultTreeModel(rootNode, true);
+        tree = new JTree(model);
+        tree.setRootVisible(singleRoot);
+        tree.setShowsRootHandles(true);
+        tree.getSelectionModel().setSelectionMode(TreeSelectionModel.SINGLE_TREE_SELECTION);
+        tree.addTreeWillExpandListener(new TreeWillExpandListener() {
+            public void treeWillExpand(final TreeExpansionEvent event) {
+                load((DefaultMutableTreeNode) event.getPath().getLastPathComponent());
+            }
+
+            public void treeWillCollapse(final TreeExpansionEvent event) {
+                ignore();
+            }
+        });
+        add(new JScrollPane(tree), BorderLayout.CENTER);
+        if (singleRoot) {
+            // JTree already expanded the root without asking the listener
+            load(rootNode);
+        }
+    }
+
+    /**
+     * Returns the tree.
+     * 
+     * @return Tree component.
+     */
+    public final JTree getTree() {
+        return tree;
+    }
+
+    /**
+     * Returns the selected directory.
+     * 
+     * @return Directory or <code>null</code> if nothing is selected.
+     */
+    public final File getSelectedDirectory() {
+        final TreePath path = tree.getSelectionPath();
+        if (path == null) {
+            return null;
+        }
+        final Object obj = ((DefaultMutableTreeNode) path.getLastPathComponent())
+                .getUserObject();
+        if (obj instanceof Directory) {
+            return ((Directory) obj).getFile();
+        }
+        return null;
+    }
+
+    /**
+     * Expands the tree along the path of a directory and selects it. As the
+     * directories are loaded in the background this happens step by step. If
+     * the directory doesn't exist the nearest existing parent is selected.
+     * Must be called in the EDT.
+     * 
+     * @param dir
+     *            Directory to select.
+     */
+    public final void setSelectedDirectory(final File dir) {
+        final List list = new ArrayList();
+        File file = dir.getAbsoluteFile();
+        while (file != null) {
+            list.add(0, file);
+            file = file.getParentFile();
+        }
+        targetPath = (File[]) list.toArray(new File[list.size()]);
+        if (rootNode.getUserObject() instanceof Directory) {
+            if (!getFile(rootNode).equals(targetPath[0])) {
+                targetNode = null;
+                return;
+            }
+            targetDepth = 0;
+        } else {
+            targetDepth = -1;
+        }
+        targetNode = rootNode;
+        continueTarget();
+    }
+
+    private void continueTarget() {
+        while (targetNode != null) {
+            if (targetDepth == targetPath.length - 1) {
+                select(targetNode);
+                return;
+            }
+            final DefaultMutableTreeNode child = findChild(targetNode,
+                    targetPath[targetDepth + 1]);
+            if (child == null) {
+                final Object obj = targetNode.getUserObject();
+                if ((obj instanceof Directory) && ((Directory) obj).isLoaded()) {
+                    // Doesn't exist - Take the nearest parent
+                    select(targetNode);
+                } else {
+                    // Wait for the next batch
+                    load(targetNode);
+                    tree.expandPath(new TreePath(targetNode.getPath()));
+                }
+                return;
+            }
+            targetNode = child;
+            targetDepth++;
+        }
+    }
+
+    private void select(final DefaultMutableTreeNode node) {
+        final TreePath path = new TreePath(node.getPath());
+        tree.setSelectionPath(path);
+        tree.scrollPathToVisible(path);
+        targetNode = null;
+    }
+
+    private static DefaultMutableTreeNode findChild(final DefaultMutableTreeNode node,
+            final File file) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            final DefaultMutableTreeNode child = (DefaultMutableTreeNode) node.getChildAt(i);
+            if ((child.getUserObject() instanceof Directory) && getFile(child).equals(file)) {
+                return child;
+            }
+        }
+        return null;
+    }
+
+    private static File getFile(final DefaultMutableTreeNode node) {
+        return ((Directory) node.getUserObject()).getFile();
+    }
+
+    private static DefaultMutableTreeNode createNode(final File file, final String name) {
+        final DefaultMutableTreeNode node = new DefaultMutableTreeNode(new Directory(file,
+                name), true);
+        node.add(new DefaultMutableTreeNode(LOADING_TEXT, false));
+        return node;
+    }
+
+    private void load(final DefaultMutableTreeNode node) {
+        if (!(node.getUserObject() instanceof Directory)) {
+            return;
+        }
+        final Directory dir = (Directory) node.getUserObject();
+        if (dir.isLoading() || dir.isLoaded()) {
+            return;
+        }
+        dir.setLoading(true);
+        LOADER.execute(new Runnable() {
+            public void run() {
+                list(node, dir.getFile());
+            }
+        });
+    }
+
+    /**
+     * Lists the sub directories in a background thread or takes them from the
+     * cache.
+     * 
+     * @param node
+     *            Node to add the directories to.
+     * @param dir
+     *            Directory to list.
+     */
+    private void list(final DefaultMutableTreeNode node, final File dir) {
+        if (cache != null) {
+            final File[] cached = cache.get(dir);
+            if (cached != null) {
+                // Same batches as below - Huge directories must not block the EDT
+                int start = 0;
+                do {
+                    final int end = Math.min(start + BATCH_SIZE, cached.length);
+                    publish(node, Arrays.asList(cached).subList(start, end),
+                            end == cached.length);
+                    start = end;
+                } while (start < cached.length);
+                return;
+            }
+        }
+        final long lastModified = dir.lastModified();
+        final List all = new ArrayList();
+        List batch = new ArrayList();
+        final String[] list = dir.list();
+        try {
+            final String[] names = (list == null) ? new String[0] : list;
+            Arrays.sort(names, String.CASE_INSENSITIVE_ORDER);
+            long last = System.currentTimeMillis();
+            for (int i = 0; i < names.length; i++) {
+                final File file = new File(dir, names[i]);
+                if (file.isDirectory()) {
+                    batch.add(file);
+                    all.add(file);
+                }
+                final long now = System.currentTimeMillis();
+                if ((batch.size() >= BATCH_SIZE)
+                        || (!batch.isEmpty() && (now - last >= BATCH_DELAY))) {
+                    publish(node, batch, false);
+                    batch = new ArrayList();
+                    last = now;
+                }
+            }
+        } finally {
+            publish(node, batch, true);
+        }
+        // Don't cache a directory that could not be read
+        if ((list != null) && (cache != null)) {
+            cache.put(dir, lastModified, (File[]) all.toArray(new File[all.size()]));
+        }
+    }
+
+    private void publish(final DefaultMutableTreeNode node, final List files,
+            final boolean done) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                insert(node, files, done);
+            }
+        });
+    }
+
+    /**
+     * Adds a batch of directories in the EDT.
+     * 
+     * @param node
+     *            Parent node.
+     * @param files
+     *            Directories to add.
+     * @param done
+     *            If this is the last batch <code>true</code> else
+     *            <code>false</code>.
+     */
+    private void insert(final DefaultMutableTreeNode node, final List files,
+            final boolean done) {
+        // The "loading" entry stays the last child until everything is loaded
+        final int start = node.getChildCount() - 1;
+        if (files.size() > 0) {
+            final int[] indices = new int[files.size()];
+            for (int i = 0; i < indices.length; i++) {
+                final File file = (File) files.get(i);
+                node.insert(createNode(file, file.getName()), start + i);
+                indices[i] = start + i;
+            }
+            model.nodesWereInserted(node, indices);
+        }
+        if (done) {
+            final Directory dir = (Directory) node.getUserObject();
+            dir.setLoading(false);
+            dir.setLoaded(true);
+            final int index = node.getChildCount() - 1;
+            final Object placeholder = node.getChildAt(index);
+            node.remove(index);
+            model.nodesWereRemoved(node, new int[] { index }, new Object[] { placeholder });
+            if (node.getChildCount() == 0) {
+                node.setAllowsChildren(false);
+                model.nodeChanged(node);
+            }
+        }
+        if (node == targetNode) {
+            continueTarget();
+        }
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+    /**
+     * Shows a modal dialog with a directory tree. Must be called in the EDT.
+     * 
+     * @param parent
+     *            Parent component - Can be <code>null</code>.
+     * @param title
+     *            Title of the dialog.
+     * @param dir
+     *            Directory to select initially - Can be <code>null</code>.
+     * 
+     * @return Selected directory or <code>null</code> if the dialog was
+     *         canceled.
+     */
+    public static File showDialog(final Component parent, final String title, final File dir) {
+        final Window window;
+        if ((parent == null) || (parent instanceof Window)) {
+            window = (Window) parent;
+        } else {
+            window = SwingUtilities.getWindowAncestor(parent);
+        }
+        final JDialog dialog;
+        if (window instanceof Dialog) {
+            dialog = new JDialog((Dialog) window, title, true);
+        } else {
+            dialog = new JDialog((Frame) window, title, true);
+        }
+        final DirectoryTreePanel panel = new DirectoryTreePanel();
+        final File[] result = new File[1];
+        final JButton buttonOK = new JButton("OK");
+        buttonOK.setEnabled(false);
+        buttonOK.addActionListener(new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                result[0] = panel.getSelectedDirectory();
+                dialog.setVisible(false);
+            }
+        });
+        final JButton buttonCancel = new JButton("Cancel");
+        buttonCancel.addActionListener(new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                dialog.setVisible(false);
+            }
+        });
+        panel.getTree().addTreeSelectionListener(new TreeSelectionListener() {
+            public void valueChanged(final TreeSelectionEvent e) {
+                buttonOK.setEnabled(panel.getSelectedDirectory() != null);
+            }
+        });
+        final JPanel buttons = new JPanel(new FlowLayout(FlowLayout.RIGHT));
+        buttons.add(buttonCancel);
+        buttons.add(buttonOK);
+        dialog.getContentPane().add(panel, BorderLayout.CENTER);
+        dialog.getContentPane().add(buttons, BorderLayout.SOUTH);
+        dialog.getRootPane().setDefaultButton(buttonOK);
+        dialog.setSize(400, 500);
+        dialog.setLocationRelativeTo(parent);
+        if (dir != null) {
+            panel.setSelectedDirectory(dir);
+        }
+        dialog.setVisible(true);
+        dialog.dispose();
+        return result[0];
+    }
+
+    /**
+     * User object of a directory node.
+     */
+    private static final class Directory {
+
+        private final File file;
+
+        private final String name;
+
+        private boolean loading = false;
+
+        private boolean loaded = false;
+
+        /**
+         * Constructor with file and display name.
+         * 
+         * @param file
+         *            Directory.
+         * @param name
+         *            Name to display.
+         */
+        public Directory(final File file, final String name) {
+            super();
+            this.file = file;
+            this.name = name;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isLoading() {
+            return loading;
+        }
+
+        public void setLoading(final boolean loading) {
+            this.loading = loading;
+        }
+
+        public boolean isLoaded() {
+            return loaded;
+        }
+
+        public void setLoaded(final boolean loaded) {
+            this.loaded = loaded;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final String toString() {
+            return name;
+        }
+
+    }
+
+}
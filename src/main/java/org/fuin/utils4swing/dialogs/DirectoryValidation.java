@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.dialogs;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Result of checking if a directory can be used as destination: It must
+ * exist, be writable and have enough free space. The checks access the file
+ * system and may block on slow or unreachable drives - Don't call
+ * {@link #validate(File, long)} in the Event Dispatch Thread (EDT).
+ */
+public final class DirectoryValidation {
+
+    /** The directory can be used. */
+    public static final int STATUS_VALID = 0;
+
+    /** The directory does not exist. */
+    public static final int STATUS_NOT_FOUND = 1;
+
+    /** The path exists but is not a directory. */
+    public static final int STATUS_NOT_A_DIRECTORY = 2;
+
+    /** No file can be created in the directory. */
+    public static final int STATUS_NOT_WRITABLE = 3;
+
+    /** The free space is less than the expected size. */
+    public static final int STATUS_NOT_ENOUGH_SPACE = 4;
+
+    /** Value for an unknown free space. */
+    public static final long UNKNOWN = -1;
+
+    /** <code>File.getUsableSpace()</code> is only available since Java 6. */
+    private static final Method USABLE_SPACE = findUsableSpace();
+
+    private final File directory;
+
+    private final int status;
+
+    private final long expectedSize;
+
+    private final long usableSpace;
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param directory
+     *            Checked directory.
+     * @param status
+     *            Result of the check.
+     * @param expectedSize
+     *            Number of bytes the caller wants to write.
+     * @param usableSpace
+     *            Free space or {@link #UNKNOWN}.
+     */
+    private DirectoryValidation(final File directory, final int status,
+            final long expectedSize, final long usableSpace) {
+        super();
+        this.directory = directory;
+        this.status = status;
+        this.expectedSize = expectedSize;
+        this.usableSpace = usableSpace;
+    }
+
+    /**
+     * Checks a directory.
+     * 
+     * @param directory
+     *            Directory to check.
+     * @param expectedSize
+     *            Number of bytes the caller wants to write - Zero or less
+     *            skips the free space check.
+     * 
+     * @return Result.
+     */
+    public static DirectoryValidation validate(final File directory, final long expectedSize) {
+        Utils4J.checkNotNull("directory", directory);
+        if (!directory.exists()) {
+            return new DirectoryValidation(directory, STATUS_NOT_FOUND, expectedSize, UNKNOWN);
+        }
+        if (!directory.isDirectory()) {
+            return new DirectoryValidation(directory, STATUS_NOT_A_DIRECTORY, expectedSize,
+                    UNKNOWN);
+        }
+        if (!isWritable(directory)) {
+            return new DirectoryValidation(directory, STATUS_NOT_WRITABLE, expectedSize,
+                    UNKNOWN);
+        }
+        final long space = getUsableSpace(directory);
+        if ((expectedSize > 0) && (space != UNKNOWN) && (space < expectedSize)) {
+            return new DirectoryValidation(directory, STATUS_NOT_ENOUGH_SPACE, expectedSize,
+                    space);
+        }
+        return new DirectoryValidation(directory, STATUS_VALID, expectedSize, space);
+    }
+
+    /**
+     * Returns the checked directory.
+     * 
+     * @return Directory.
+     */
+    public final File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the result of the check.
+     * 
+     * @return One of the <code>STATUS_XXX</code> constants.
+     */
+    public final int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns if the directory can be used.
+     * 
+     * @return If the status is {@link #STATUS_VALID} <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final boolean isValid() {
+        return status == STATUS_VALID;
+    }
+
+    /**
+     * Returns the number of bytes the caller wants to write.
+     * 
+     * @return Expected size - Zero or less if the space was not checked.
+     */
+    public final long getExpectedSize() {
+        return expectedSize;
+    }
+
+    /**
+     * Returns the free space of the directory.
+     * 
+     * @return Number of bytes or {@link #UNKNOWN} if not available.
+     */
+    public final long getUsableSpace() {
+        return usableSpace;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final String toString() {
+        return directory + " [status=" + status + ", expectedSize=" + expectedSize
+                + ", usableSpace=" + usableSpace + "]";
+    }
+
+    private static boolean isWritable(final File dir) {
+        // "canWrite()" ignores ACLs and read-only mounts on some platforms
+        try {
+            final File file = File.createTempFile(".write", ".tmp", dir);
+            file.delete();
+            return true;
+        } catch (final IOException ex) {
+            return false;
+        } catch (final SecurityException ex) {
+            return false;
+        }
+    }
+
+    private static long getUsableSpace(final File dir) {
+        if (USABLE_SPACE == null) {
+            return UNKNOWN;
+        }
+        try {
+            return ((Long) USABLE_SPACE.invoke(dir, new Object[0])).longValue();
+        } catch (final Exception ex) {
+            return UNKNOWN;
+        }
+    }
+
+    private static Method findUsableSpace() {
+        try {
+            return File.class.getMethod("getUsableSpace", new Class[0]);
+        } catch (final NoSuchMethodException ex) {
+            return null;
+        }
+    }
+
+}
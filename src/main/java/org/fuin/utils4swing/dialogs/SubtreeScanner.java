@@ -0,0 +1,297 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.dialogs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fuin.utils4j.Utils4J;
+import org.fuin.utils4swing.common.WorkerQueue;
+
+/**
+ * Counts the files of a directory and their total size in the background.
+ * Sub directories are scanned in parallel by several threads. The counters can
+ * be read at any time while the scan is running. Symbolic links to directories
+ * are not followed. This class is thread safe.
+ */
+public final class SubtreeScanner {
+
+    private static final WorkerQueue QUEUE = new WorkerQueue("SubtreeScanner", 4);
+
+    private final File root;
+
+    private final boolean recursive;
+
+    private boolean started = false;
+
+    private boolean canceled = false;
+
+    private boolean done = false;
+
+    private boolean valid = true;
+
+    private int pending = 0;
+
+    private long fileCount = 0;
+
+    private long directoryCount = 0;
+
+    private long totalSize = 0;
+
+    /**
+     * Constructor with directory.
+     * 
+     * @param root
+     *            Directory to scan.
+     * @param recursive
+     *            If sub directories should be included <code>true</code>
+     *            else <code>false</code>.
+     */
+    public SubtreeScanner(final File root, final boolean recursive) {
+        super();
+        Utils4J.checkNotNull("root", root);
+        this.root = root;
+        this.recursive = recursive;
+    }
+
+    /**
+     * Returns the directory to scan.
+     * 
+     * @return Root directory.
+     */
+    public final File getRoot() {
+        return root;
+    }
+
+    /**
+     * Returns if sub directories are included.
+     * 
+     * @return If the scan is recursive <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Starts the scan in the background and returns immediately.
+     */
+    public final synchronized void start() {
+        if (started) {
+            throw new IllegalStateException("The scan was already started!");
+        }
+        started = true;
+        pending = 1;
+        QUEUE.execute(new Runnable() {
+            public void run() {
+                scanRoot();
+            }
+        });
+    }
+
+    /**
+     * Stops the scan. The counters keep the values reached so far.
+     */
+    public final synchronized void cancel() {
+        canceled = true;
+    }
+
+    /**
+     * Returns if the scan was canceled.
+     * 
+     * @return If canceled <code>true</code> else <code>false</code>.
+     */
+    public final synchronized boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Returns if the scan has finished or was canceled and all threads have
+     * stopped working on it.
+     * 
+     * @return If finished <code>true</code> else <code>false</code>.
+     */
+    public final synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Returns if the root is an existing directory. Only reliable after the
+     * scan is done.
+     * 
+     * @return If the root could be scanned <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final synchronized boolean isValid() {
+        return valid;
+    }
+
+    /**
+     * Waits at most the given time for the scan to finish.
+     * 
+     * @param timeoutMillis
+     *            Maximum time to wait in milliseconds.
+     * 
+     * @return If the scan is done <code>true</code> else <code>false</code>.
+     * 
+     * @throws InterruptedException
+     *             The thread was interrupted while waiting.
+     */
+    public final synchronized boolean waitFor(final long timeoutMillis)
+            throws InterruptedException {
+        final long end = System.currentTimeMillis() + timeoutMillis;
+        long wait = timeoutMillis;
+        while (!done && (wait > 0)) {
+            wait(wait);
+            wait = end - System.currentTimeMillis();
+        }
+        return done;
+    }
+
+    /**
+     * Returns the number of files found so far.
+     * 
+     * @return Number of files.
+     */
+    public final synchronized long getFileCount() {
+        return fileCount;
+    }
+
+    /**
+     * Returns the number of sub directories found so far.
+     * 
+     * @return Number of directories.
+     */
+    public final synchronized long getDirectoryCount() {
+        return directoryCount;
+    }
+
+    /**
+     * Returns the total size of the files found so far.
+     * 
+     * @return Size in bytes.
+     */
+    public final synchronized long getTotalSize() {
+        return totalSize;
+    }
+
+    private void scanRoot() {
+        // Never leave the scanner undone - The queue swallows exceptions
+        try {
+            String path = null;
+            if (!isCanceled() && root.isDirectory()) {
+                try {
+                    path = root.getCanonicalPath();
+                } catch (final IOException ex) {
+                    path = root.getAbsolutePath();
+                }
+            }
+            if (path == null) {
+                synchronized (this) {
+                    valid = false;
+                }
+            } else {
+                list(root, path);
+            }
+        } finally {
+            finished();
+        }
+    }
+
+    private void scan(final File dir, final String path) {
+        try {
+            list(dir, path);
+        } finally {
+            finished();
+        }
+    }
+
+    /**
+     * Counts the files of a directory and adds a task for every sub
+     * directory.
+     * 
+     * @param dir
+     *            Directory to scan.
+     * @param path
+     *            Canonical path of the directory.
+     */
+    private void list(final File dir, final String path) {
+        final File[] files = isCanceled() ? null : dir.listFiles();
+        if (files != null) {
+            final List dirs = new ArrayList();
+            long count = 0;
+            long size = 0;
+            for (int i = 0; i < files.length; i++) {
+                if (files[i].isDirectory()) {
+                    dirs.add(files[i]);
+                } else {
+                    count++;
+                    size = size + files[i].length();
+                }
+            }
+            synchronized (this) {
+                fileCount = fileCount + count;
+                directoryCount = directoryCount + dirs.size();
+                totalSize = totalSize + size;
+            }
+            if (recursive) {
+                for (int i = 0; i < dirs.size(); i++) {
+                    scanLater((File) dirs.get(i), path);
+                }
+            }
+        }
+    }
+
+    private void scanLater(final File dir, final String parentPath) {
+        final String path;
+        try {
+            path = dir.getCanonicalPath();
+        } catch (final IOException ex) {
+            return;
+        }
+        // A different canonical path means a link - Don't follow it
+        if (!path.equals(parentPath + File.separator + dir.getName())
+                && !path.equals(parentPath + dir.getName())) {
+            return;
+        }
+        synchronized (this) {
+            if (canceled) {
+                return;
+            }
+            pending++;
+        }
+        QUEUE.execute(new Runnable() {
+            public void run() {
+                scan(dir, path);
+            }
+        });
+    }
+
+    private void finished() {
+        synchronized (this) {
+            pending--;
+            if (pending == 0) {
+                done = true;
+                notifyAll();
+            }
+        }
+    }
+
+}
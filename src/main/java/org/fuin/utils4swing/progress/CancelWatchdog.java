@@ -0,0 +1,167 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.IOException;
+import java.nio.channels.Channel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fuin.utils4j.Cancelable;
+
+/**
+ * Closes registered channels as soon as their <code>Cancelable</code> is
+ * canceled. As <code>Cancelable</code> has no way to notify anybody, a single
+ * daemon thread polls all registered instances. Closing an interruptible
+ * channel makes a thread blocked in a read on that channel return immediately
+ * with an exception, so the latency of a cancel is bounded by the poll
+ * interval.
+ */
+final class CancelWatchdog implements Runnable {
+
+    /** Milliseconds between two checks of the registered cancelables. */
+    static final long POLL_INTERVAL = 100;
+
+    private static CancelWatchdog instance = null;
+
+    private final List registrations = new ArrayList();
+
+    private Thread thread = null;
+
+    /**
+     * Private constructor - Use {@link #getInstance()}.
+     */
+    private CancelWatchdog() {
+        super();
+    }
+
+    /**
+     * Returns the one and only instance.
+     * 
+     * @return Watchdog.
+     */
+    static synchronized CancelWatchdog getInstance() {
+        if (instance == null) {
+            instance = new CancelWatchdog();
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the channel when the cancelable is canceled.
+     * 
+     * @param cancelable
+     *            Cancelable to watch.
+     * @param channel
+     *            Channel to close.
+     * 
+     * @return Registration to use for {@link #unregister(Object)}.
+     */
+    Object register(final Cancelable cancelable, final Channel channel) {
+        final Registration registration = new Registration(cancelable, channel);
+        synchronized (registrations) {
+            registrations.add(registration);
+            if (thread == null) {
+                thread = new Thread(this, "CancelWatchdog");
+                thread.setDaemon(true);
+                thread.start();
+            }
+            registrations.notifyAll();
+        }
+        return registration;
+    }
+
+    /**
+     * Stops watching a cancelable. Does nothing if the registration is
+     * unknown.
+     * 
+     * @param registration
+     *            Result of a previous call to
+     *            {@link #register(Cancelable, Channel)}.
+     */
+    void unregister(final Object registration) {
+        synchronized (registrations) {
+            registrations.remove(registration);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void run() {
+        while (true) {
+            final Registration[] regs;
+            synchronized (registrations) {
+                while (registrations.size() == 0) {
+                    try {
+                        registrations.wait();
+                    } catch (final InterruptedException ex) {
+                        ignore();
+                    }
+                }
+                regs = (Registration[]) registrations.toArray(new Registration[registrations
+                        .size()]);
+            }
+            for (int i = 0; i < regs.length; i++) {
+                if (regs[i].cancelable.isCanceled()) {
+                    unregister(regs[i]);
+                    try {
+                        regs[i].channel.close();
+                    } catch (final IOException ex) {
+                        ignore();
+                    }
+                }
+            }
+            try {
+                Thread.sleep(POLL_INTERVAL);
+            } catch (final InterruptedException ex) {
+                ignore();
+            }
+        }
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+    /**
+     * Cancelable and the channel to close.
+     */
+    private static final class Registration {
+
+        private final Cancelable cancelable;
+
+        private final Channel channel;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param cancelable
+         *            Cancelable to watch.
+         * @param channel
+         *            Channel to close.
+         */
+        public Registration(final Cancelable cancelable, final Channel channel) {
+            super();
+            this.cancelable = cancelable;
+            this.channel = channel;
+        }
+
+    }
+
+}
@@ -0,0 +1,462 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import org.fuin.utils4j.Cancelable;
+
+/**
+ * Updates an existing destination file with the rsync algorithm. The
+ * destination is split into blocks whose weak (rolling) and strong (MD5)
+ * checksums are stored. The source is then scanned with a window that rolls
+ * byte by byte; whenever the weak checksum of the window hits a block and the
+ * strong checksum confirms it, the block is reused, everything between two
+ * matches is literal data. If all reused blocks are still at their old
+ * position (the typical "a few MB changed inside a large file"), only the
+ * literal data is written into the destination in place. Otherwise a new file
+ * is assembled next to the destination from the old blocks and the literal
+ * data and replaces it. The progress is reported as source bytes processed.
+ */
+final class DeltaCopy {
+
+    private static final int MIN_BLOCK_SIZE = 2 * 1024;
+
+    private static final int MAX_BLOCK_SIZE = 128 * 1024;
+
+    private static final int MIN_BUFFER_SIZE = 1024 * 1024;
+
+    private static final int MD5_LENGTH = 16;
+
+    private final FileCopyProgressListener listener;
+
+    private final Cancelable cancelable;
+
+    private int blockSize;
+
+    private int blockCount;
+
+    private int[] weak;
+
+    private byte[] strong;
+
+    private int[] head;
+
+    private int[] tail;
+
+    private int[] next;
+
+    private int opCount;
+
+    private long[] opNew;
+
+    private long[] opOld;
+
+    private long[] opLength;
+
+    /**
+     * Constructor with listener and cancelable.
+     * 
+     * @param listener
+     *            Listener to inform about progress - Can be <code>null</code>.
+     * @param cancelable
+     *            Cancel tracker - Can be <code>null</code>.
+     */
+    public DeltaCopy(final FileCopyProgressListener listener, final Cancelable cancelable) {
+        super();
+        this.listener = listener;
+        this.cancelable = cancelable;
+    }
+
+    /**
+     * Updates the destination to have the same content as the source.
+     * 
+     * @param src
+     *            Source file.
+     * @param dest
+     *            Existing destination file.
+     * @param md
+     *            Digest to update with the complete source content - Can be
+     *            <code>null</code>.
+     * 
+     * @return Number of literal bytes that were taken from the source.
+     * 
+     * @throws IOException
+     *             Error reading or writing - If the destination was already
+     *             partially updated, it has been removed. If it was replaced
+     *             but the new file could not be renamed, the new content is
+     *             kept in a file with the suffix ".delta".
+     */
+    public long copy(final File src, final File dest, final MessageDigest md)
+            throws IOException {
+        blockSize = blockSize(dest.length());
+        signatures(dest);
+        final long srcLength = src.length();
+        scan(src, md);
+        checkCanceled();
+        if (isAligned()) {
+            return updateInPlace(src, dest, srcLength);
+        }
+        return rebuild(src, dest);
+    }
+
+    private static int blockSize(final long length) {
+        // Square root of the length balances signature size and match rate
+        long size = (long) Math.sqrt(length);
+        size = ((size + 1023) / 1024) * 1024;
+        return (int) Math.max(MIN_BLOCK_SIZE, Math.min(MAX_BLOCK_SIZE, size));
+    }
+
+    private static int checksum(final byte[] buf, final int off, final int len) {
+        int a = 0;
+        int b = 0;
+        for (int i = 0; i < len; i++) {
+            final int x = buf[off + i] & 0xFF;
+            a = a + x;
+            b = b + (len - i) * x;
+        }
+        return ((b & 0xFFFF) << 16) | (a & 0xFFFF);
+    }
+
+    private static int spread(final int h, final int mask) {
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private void signatures(final File dest) throws IOException {
+        blockCount = (int) (dest.length() / blockSize);
+        weak = new int[blockCount];
+        strong = new byte[blockCount * MD5_LENGTH];
+        int tableSize = 16;
+        while (tableSize < blockCount * 2) {
+            tableSize = tableSize * 2;
+        }
+        head = new int[tableSize];
+        tail = new int[tableSize];
+        for (int i = 0; i < tableSize; i++) {
+            head[i] = -1;
+        }
+        next = new int[blockCount];
+
+        final MessageDigest md5 = FileStateIndex.createDigest();
+        final byte[] block = new byte[blockSize];
+        final DataInputStream in = new DataInputStream(new FileInputStream(dest));
+        try {
+            for (int i = 0; i < blockCount; i++) {
+                if ((i % 64 == 0)) {
+                    checkCanceled();
+                }
+                in.readFully(block);
+                weak[i] = checksum(block, 0, blockSize);
+                md5.update(block);
+                System.arraycopy(md5.digest(), 0, strong, i * MD5_LENGTH, MD5_LENGTH);
+                // Insert at the end of the chain to prefer the first block
+                final int slot = spread(weak[i], head.length - 1);
+                next[i] = -1;
+                if (head[slot] < 0) {
+                    head[slot] = i;
+                } else {
+                    next[tail[slot]] = i;
+                }
+                tail[slot] = i;
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private int find(final int w, final byte[] buf, final int off, final long newOffset,
+            final MessageDigest md5) {
+        byte[] digest = null;
+        // Prefer the block at the same position (allows in place update)
+        if (newOffset % blockSize == 0) {
+            final long same = newOffset / blockSize;
+            if ((same < blockCount) && (weak[(int) same] == w)) {
+                md5.update(buf, off, blockSize);
+                digest = md5.digest();
+                if (equals(digest, strong, (int) same * MD5_LENGTH)) {
+                    return (int) same;
+                }
+            }
+        }
+        int i = head[spread(w, head.length - 1)];
+        while (i >= 0) {
+            if (weak[i] == w) {
+                if (digest == null) {
+                    md5.update(buf, off, blockSize);
+                    digest = md5.digest();
+                }
+                if (equals(digest, strong, i * MD5_LENGTH)) {
+                    return i;
+                }
+            }
+            i = next[i];
+        }
+        return -1;
+    }
+
+    private static boolean equals(final byte[] digest, final byte[] all, final int off) {
+        for (int i = 0; i < MD5_LENGTH; i++) {
+            if (digest[i] != all[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void scan(final File src, final MessageDigest md) throws IOException {
+        opCount = 0;
+        opNew = new long[64];
+        opOld = new long[64];
+        opLength = new long[64];
+
+        final int len = blockSize;
+        final MessageDigest md5 = FileStateIndex.createDigest();
+        final byte[] buf = new byte[Math.max(MIN_BUFFER_SIZE, 4 * len)];
+        final FileInputStream fis = new FileInputStream(src);
+        final FileCopyProgressChannel in = new FileCopyProgressChannel(listener, fis
+                .getChannel(), cancelable);
+        try {
+            long base = 0; // File offset of buf[0]
+            int filled = 0;
+            int ws = 0; // Window start
+            long literalStart = 0;
+            boolean eof = false;
+            boolean haveSum = false;
+            int a = 0;
+            int b = 0;
+            while (true) {
+                if ((ws + len > filled) && !eof) {
+                    // Discard everything before the window and refill
+                    System.arraycopy(buf, ws, buf, 0, filled - ws);
+                    filled = filled - ws;
+                    base = base + ws;
+                    ws = 0;
+                    final ByteBuffer bb = ByteBuffer.wrap(buf, filled, buf.length - filled);
+                    while (bb.hasRemaining()) {
+                        if (in.read(bb) < 0) {
+                            eof = true;
+                            break;
+                        }
+                    }
+                    if (md != null) {
+                        md.update(buf, filled, bb.position() - filled);
+                    }
+                    filled = bb.position();
+                }
+                if (blockCount == 0) {
+                    // Nothing to match against - Everything is literal
+                    ws = filled;
+                    if (eof) {
+                        break;
+                    }
+                    continue;
+                }
+                if (ws + len > filled) {
+                    break;
+                }
+                if (!haveSum) {
+                    final int sum = checksum(buf, ws, len);
+                    a = sum & 0xFFFF;
+                    b = sum >>> 16;
+                    haveSum = true;
+                }
+                final long offset = base + ws;
+                final int block = find((b << 16) | a, buf, ws, offset, md5);
+                if (block >= 0) {
+                    if (offset > literalStart) {
+                        addOp(literalStart, -1, offset - literalStart);
+                    }
+                    addOp(offset, (long) block * len, len);
+                    ws = ws + len;
+                    literalStart = base + ws;
+                    haveSum = false;
+                } else if (ws + len < filled) {
+                    final int out = buf[ws] & 0xFF;
+                    final int inByte = buf[ws + len] & 0xFF;
+                    a = (a - out + inByte) & 0xFFFF;
+                    b = (b - len * out + a) & 0xFFFF;
+                    ws++;
+                } else {
+                    ws++;
+                    haveSum = false;
+                }
+            }
+            final long end = base + filled;
+            if (end > literalStart) {
+                addOp(literalStart, -1, end - literalStart);
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private void addOp(final long newOffset, final long oldOffset, final long length) {
+        // Merge with the previous operation if contiguous
+        if (opCount > 0) {
+            final int p = opCount - 1;
+            final boolean contiguousNew = (opNew[p] + opLength[p] == newOffset);
+            if (contiguousNew && (opOld[p] < 0) && (oldOffset < 0)) {
+                opLength[p] = opLength[p] + length;
+                return;
+            }
+            if (contiguousNew && (opOld[p] >= 0) && (opOld[p] + opLength[p] == oldOffset)) {
+                opLength[p] = opLength[p] + length;
+                return;
+            }
+        }
+        if (opCount == opNew.length) {
+            opNew = grow(opNew);
+            opOld = grow(opOld);
+            opLength = grow(opLength);
+        }
+        opNew[opCount] = newOffset;
+        opOld[opCount] = oldOffset;
+        opLength[opCount] = length;
+        opCount++;
+    }
+
+    private static long[] grow(final long[] array) {
+        final long[] copy = new long[array.length * 2];
+        System.arraycopy(array, 0, copy, 0, array.length);
+        return copy;
+    }
+
+    private boolean isAligned() {
+        for (int i = 0; i < opCount; i++) {
+            if ((opOld[i] >= 0) && (opOld[i] != opNew[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long updateInPlace(final File src, final File dest, final long srcLength)
+            throws IOException {
+        long literal = 0;
+        boolean ok = false;
+        final RandomAccessFile in = new RandomAccessFile(src, "r");
+        try {
+            final RandomAccessFile out = new RandomAccessFile(dest, "rw");
+            try {
+                final FileChannel inChannel = in.getChannel();
+                final FileChannel outChannel = out.getChannel();
+                for (int i = 0; i < opCount; i++) {
+                    if (opOld[i] < 0) {
+                        checkCanceled();
+                        transfer(inChannel, opNew[i], opLength[i], outChannel, opNew[i]);
+                        literal = literal + opLength[i];
+                    }
+                }
+                out.setLength(srcLength);
+                ok = true;
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+            if (!ok) {
+                // Partially updated - Don't leave a corrupt file
+                dest.delete();
+            }
+        }
+        return literal;
+    }
+
+    private long rebuild(final File src, final File dest) throws IOException {
+        long literal = 0;
+        final File tmp = new File(dest.getPath() + ".delta");
+        boolean ok = false;
+        final RandomAccessFile in = new RandomAccessFile(src, "r");
+        try {
+            final RandomAccessFile old = new RandomAccessFile(dest, "r");
+            try {
+                final RandomAccessFile out = new RandomAccessFile(tmp, "rw");
+                try {
+                    out.setLength(0);
+                    final FileChannel outChannel = out.getChannel();
+                    long pos = 0;
+                    for (int i = 0; i < opCount; i++) {
+                        checkCanceled();
+                        if (opOld[i] < 0) {
+                            transfer(in.getChannel(), opNew[i], opLength[i], outChannel, pos);
+                            literal = literal + opLength[i];
+                        } else {
+                            transfer(old.getChannel(), opOld[i], opLength[i], outChannel, pos);
+                        }
+                        pos = pos + opLength[i];
+                    }
+                    ok = true;
+                } finally {
+                    out.close();
+                }
+            } finally {
+                old.close();
+            }
+        } finally {
+            in.close();
+            if (!ok) {
+                tmp.delete();
+            }
+        }
+        if (!dest.delete()) {
+            tmp.delete();
+            throw new IOException("Cannot replace " + dest);
+        }
+        if (!tmp.renameTo(dest)) {
+            // The new content only exists in the temporary file now
+            throw new IOException("Cannot rename " + tmp + " to " + dest);
+        }
+        return literal;
+    }
+
+    private static void transfer(final FileChannel from, final long fromPos, final long length,
+            final FileChannel to, final long toPos) throws IOException {
+        final ByteBuffer buf = ByteBuffer.allocate((int) Math.min(length,
+                FileCopier.DEFAULT_BUFFER_SIZE));
+        long done = 0;
+        while (done < length) {
+            buf.clear();
+            if (length - done < buf.capacity()) {
+                buf.limit((int) (length - done));
+            }
+            final int count = from.read(buf, fromPos + done);
+            if (count < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            buf.flip();
+            while (buf.hasRemaining()) {
+                to.write(buf, toPos + done + buf.position());
+            }
+            done = done + count;
+        }
+    }
+
+    private void checkCanceled() throws FileCopyCanceledException {
+        if ((cancelable != null) && cancelable.isCanceled()) {
+            throw new FileCopyCanceledException("Transfer canceled");
+        }
+    }
+
+}
@@ -0,0 +1,339 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+import org.fuin.utils4j.Cancelable;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Copies files and reports the progress to a
+ * <code>FileCopyProgressListener</code>. A cancel aborts even a read that is
+ * blocked on a stalled source (see {@link FileCopyProgressChannel}) and the
+ * partially written destination file is deleted. If a
+ * {@link FileStateIndex} is set, destination files that are already up to
+ * date are skipped. The copy mode decides how the destination is written:
+ * As a plain stream, as a delta against the existing destination or as a
+ * sparse file.
+ */
+public final class FileCopier {
+
+    /** Default size of the copy buffer. */
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    /** Copy mode: All bytes are streamed into the destination. */
+    public static final int MODE_STREAM = 0;
+
+    /**
+     * Copy mode: An existing destination is updated with the rsync algorithm
+     * and only data not found in the destination is written. Falls back to
+     * {@link #MODE_STREAM} if the destination does not exist.
+     */
+    public static final int MODE_DELTA = 1;
+
+    /**
+     * Copy mode: Blocks that contain only zeros are not written but become
+     * holes in the destination. Useful for mostly empty files like virtual
+     * machine disk images.
+     */
+    public static final int MODE_SPARSE = 2;
+
+    private final FileCopyProgressListener listener;
+
+    private final Cancelable cancelable;
+
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    private FileStateIndex index = null;
+
+    private int mode = MODE_STREAM;
+
+    /**
+     * Constructor with listener and cancelable.
+     * 
+     * @param listener
+     *            Listener to inform about progress - Can be <code>null</code>.
+     * @param cancelable
+     *            Cancel tracker - Can be <code>null</code> if the copy cannot
+     *            be canceled.
+     */
+    public FileCopier(final FileCopyProgressListener listener, final Cancelable cancelable) {
+        super();
+        this.listener = listener;
+        this.cancelable = cancelable;
+    }
+
+    /**
+     * Returns the size of the copy buffer.
+     * 
+     * @return Buffer size in bytes.
+     */
+    public final int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size of the copy buffer.
+     * 
+     * @param bufferSize
+     *            Buffer size in bytes - Must be greater than zero.
+     */
+    public final void setBufferSize(final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The argument 'bufferSize' must be > 0: "
+                    + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns the copy mode.
+     * 
+     * @return Mode - One of the <code>MODE_*</code> constants.
+     */
+    public final int getMode() {
+        return mode;
+    }
+
+    /**
+     * Sets the copy mode.
+     * 
+     * @param mode
+     *            Mode - One of the <code>MODE_*</code> constants.
+     */
+    public final void setMode(final int mode) {
+        if ((mode != MODE_STREAM) && (mode != MODE_DELTA) && (mode != MODE_SPARSE)) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        this.mode = mode;
+    }
+
+    /**
+     * Returns the index used to skip unchanged files.
+     * 
+     * @return Index or <code>null</code> if all files are copied.
+     */
+    public final FileStateIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Sets the index used to skip unchanged files. The index is updated with
+     * every copied file and has to be saved by the caller.
+     * 
+     * @param index
+     *            Index or <code>null</code> to copy all files.
+     */
+    public final void setIndex(final FileStateIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * Returns if the copy was canceled.
+     * 
+     * @return If it was canceled <code>true</code> else <code>false</code>.
+     */
+    public final boolean isCanceled() {
+        if (cancelable == null) {
+            return false;
+        }
+        return cancelable.isCanceled();
+    }
+
+    /**
+     * Copies a file. If an index is set, the copy is skipped if the
+     * destination did not change since the last copy and the source has the
+     * same size and modification time (or the same content) as recorded in
+     * the index. Skipped files are reported with
+     * {@link FileCopySkipListener#skipFile(String, String, int, int)} if the
+     * listener supports it.
+     * 
+     * @param src
+     *            Source file.
+     * @param dest
+     *            Destination file - Will be overwritten if it already exists.
+     * @param fileNo
+     *            Number of the file reported to the listener.
+     * 
+     * @throws FileCopyCanceledException
+     *             The copy was canceled - A partially written destination
+     *             file has been removed. A delta copy that is canceled before
+     *             it starts writing leaves the old destination unchanged.
+     * @throws IOException
+     *             Error copying the file - A partially written destination
+     *             file has been removed.
+     */
+    public final void copy(final File src, final File dest, final int fileNo)
+            throws IOException {
+        Utils4J.checkNotNull("src", src);
+        Utils4J.checkNotNull("dest", dest);
+        final String key = dest.getAbsolutePath();
+        final MessageDigest md;
+        if (index == null) {
+            md = null;
+        } else {
+            if (isUnchanged(src, dest, key)) {
+                skipped(src, dest, fileNo);
+                return;
+            }
+            md = FileStateIndex.createDigest();
+        }
+        if (((mode == MODE_DELTA) && dest.isFile()) || (mode == MODE_SPARSE)) {
+            if (listener != null) {
+                listener.updateFile(src.getPath(), dest.getPath(), fileNo,
+                        FileCopyProgressChannel.toInt(src.length()));
+            }
+            if (mode == MODE_DELTA) {
+                new DeltaCopy(listener, cancelable).copy(src, dest, md);
+            } else {
+                new SparseCopy(listener, cancelable, bufferSize).copy(src, dest, md);
+            }
+        } else {
+            final FileInputStream in = new FileInputStream(src);
+            copy(in.getChannel(), src.getPath(), src.length(), dest, fileNo, md);
+        }
+        if (index != null) {
+            dest.setLastModified(src.lastModified());
+            index.put(key, dest.length(), dest.lastModified(), md.digest());
+        }
+    }
+
+    private boolean isUnchanged(final File src, final File dest, final String key)
+            throws IOException {
+        if (!index.matches(key, dest) || (src.length() != dest.length())) {
+            return false;
+        }
+        if (src.lastModified() == dest.lastModified()) {
+            return true;
+        }
+        // New time stamp (or a file system with a coarse clock) - Compare content
+        final byte[] hash = FileStateIndex.hash(src);
+        if (!Arrays.equals(hash, index.getHash(key))) {
+            return false;
+        }
+        dest.setLastModified(src.lastModified());
+        index.put(key, dest.length(), dest.lastModified(), hash);
+        return true;
+    }
+
+    private void skipped(final File src, final File dest, final int fileNo) {
+        if (listener == null) {
+            return;
+        }
+        final int size = FileCopyProgressChannel.toInt(src.length());
+        if (listener instanceof FileCopySkipListener) {
+            ((FileCopySkipListener) listener).skipFile(src.getPath(), dest.getPath(), fileNo,
+                    size);
+        } else {
+            listener.updateFile(src.getPath(), dest.getPath(), fileNo, size);
+            listener.updateByte(size);
+        }
+    }
+
+    /**
+     * Copies a stream into a file. The stream is closed in any case.
+     * 
+     * @param in
+     *            Stream to read from.
+     * @param sourceName
+     *            Name of the source reported to the listener.
+     * @param size
+     *            Expected number of bytes.
+     * @param dest
+     *            Destination file - Will be overwritten if it already exists.
+     * @param fileNo
+     *            Number of the file reported to the listener.
+     * 
+     * @throws FileCopyCanceledException
+     *             The copy was canceled - The destination file has been
+     *             removed.
+     * @throws IOException
+     *             Error copying the file - The destination file has been
+     *             removed.
+     */
+    public final void copy(final InputStream in, final String sourceName, final long size,
+            final File dest, final int fileNo) throws IOException {
+        Utils4J.checkNotNull("in", in);
+        Utils4J.checkNotNull("dest", dest);
+        copy(Channels.newChannel(in), sourceName, size, dest, fileNo, null);
+    }
+
+    private void copy(final ReadableByteChannel source, final String sourceName,
+            final long size, final File dest, final int fileNo, final MessageDigest md)
+            throws IOException {
+
+        if (listener != null) {
+            listener.updateFile(sourceName, dest.getPath(), fileNo,
+                    FileCopyProgressChannel.toInt(size));
+        }
+        final FileCopyProgressChannel in = new FileCopyProgressChannel(listener, source,
+                cancelable);
+        boolean opened = false;
+        boolean ok = false;
+        try {
+            final FileOutputStream out = new FileOutputStream(dest);
+            opened = true;
+            try {
+                transfer(in, out.getChannel(), md);
+            } finally {
+                out.close();
+            }
+            ok = true;
+        } finally {
+            in.close();
+            // An existing file that could not be opened is still intact
+            if (opened && !ok) {
+                dest.delete();
+            }
+        }
+
+    }
+
+    private void transfer(final FileCopyProgressChannel in, final FileChannel out,
+            final MessageDigest md) throws IOException {
+        final ByteBuffer buf;
+        if (md == null) {
+            buf = ByteBuffer.allocateDirect(bufferSize);
+        } else {
+            // The digest needs access to the array
+            buf = ByteBuffer.allocate(bufferSize);
+        }
+        while (in.read(buf) >= 0) {
+            buf.flip();
+            if (md != null) {
+                md.update(buf.array(), 0, buf.limit());
+            }
+            while (buf.hasRemaining()) {
+                out.write(buf);
+            }
+            buf.clear();
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.IOException;
+
+/**
+ * The user canceled a file transfer while it was in progress.
+ */
+public class FileCopyCanceledException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Constructor with message.
+     * 
+     * @param message
+     *            Error message.
+     */
+    public FileCopyCanceledException(final String message) {
+        super(message);
+    }
+
+}
@@ -0,0 +1,153 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+import org.fuin.utils4j.Cancelable;
+
+/**
+ * Updates the attached <code>FileCopyProgressListener</code> while bytes are
+ * read and aborts a read that is in progress if the transfer is canceled. The
+ * underlying channel should be interruptible (like the ones returned by
+ * <code>FileInputStream.getChannel()</code> or
+ * <code>Channels.newChannel(InputStream)</code>) - Such a channel is closed
+ * as soon as the user cancels and a read blocked on a stalled network share
+ * returns immediately with a {@link FileCopyCanceledException}.
+ */
+public class FileCopyProgressChannel implements ReadableByteChannel {
+
+    private final FileCopyProgressListener listener;
+
+    private final ReadableByteChannel channel;
+
+    private final Cancelable cancelable;
+
+    private final Object registration;
+
+    private long bytesRead = 0;
+
+    /**
+     * Constructor with listener, channel and cancelable.
+     * 
+     * @param listener
+     *            Listener to inform about progress - Can be <code>null</code>.
+     * @param channel
+     *            Channel to read from.
+     * @param cancelable
+     *            Cancel tracker to watch - Can be <code>null</code> if the
+     *            transfer cannot be canceled.
+     */
+    public FileCopyProgressChannel(final FileCopyProgressListener listener,
+            final ReadableByteChannel channel, final Cancelable cancelable) {
+        super();
+        this.listener = listener;
+        this.channel = channel;
+        this.cancelable = cancelable;
+        if (cancelable == null) {
+            registration = null;
+        } else {
+            registration = CancelWatchdog.getInstance().register(cancelable, channel);
+        }
+    }
+
+    /**
+     * Returns the number of bytes read so far.
+     * 
+     * @return Number of bytes.
+     */
+    public final long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Returns if the transfer was canceled.
+     * 
+     * @return If it was canceled <code>true</code> else <code>false</code>.
+     */
+    public final boolean isCanceled() {
+        if (cancelable == null) {
+            return false;
+        }
+        return cancelable.isCanceled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final int read(final ByteBuffer dst) throws IOException {
+        if (isCanceled()) {
+            close();
+            throw new FileCopyCanceledException("Transfer canceled");
+        }
+        final int count;
+        try {
+            count = channel.read(dst);
+        } catch (final ClosedChannelException ex) {
+            // Includes asynchronous close by the watchdog
+            if (isCanceled()) {
+                throw new FileCopyCanceledException("Transfer canceled");
+            }
+            throw ex;
+        }
+        if (count > 0) {
+            bytesRead = bytesRead + count;
+            if (listener != null) {
+                listener.updateByte(toInt(bytesRead));
+            }
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final boolean isOpen() {
+        return channel.isOpen();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void close() throws IOException {
+        if (registration != null) {
+            CancelWatchdog.getInstance().unregister(registration);
+        }
+        channel.close();
+    }
+
+    /**
+     * Converts a byte count into the <code>int</code> range used by the
+     * listener.
+     * 
+     * @param n
+     *            Number of bytes.
+     * 
+     * @return Number or <code>Integer.MAX_VALUE</code> if it's too large.
+     */
+    static int toInt(final long n) {
+        if (n > Integer.MAX_VALUE) {
+            return Integer.MAX_VALUE;
+        }
+        return (int) n;
+    }
+
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+/**
+ * Listener that only remembers the latest progress as an immutable
+ * {@link FileCopyProgressSnapshot}. Every event replaces the snapshot with a
+ * single write to a volatile field, so the producer never waits for the UI and
+ * readers in any thread always see consistent values. A
+ * <code>FileCopyProgressPanel</code> polls the model with a fixed frame rate
+ * (see {@link FileCopyProgressPanel#setModel(FileCopyProgressModel, int)}),
+ * so the cost for the UI does not depend on the number of events.<br>
+ * <br>
+ * Events for one model must not be sent by more than one thread at the same
+ * time.
+ */
+public final class FileCopyProgressModel implements FileCopySkipListener {
+
+    private volatile FileCopyProgressSnapshot snapshot;
+
+    /**
+     * Default constructor. The start time of the transfer is the creation time
+     * of the model.
+     */
+    public FileCopyProgressModel() {
+        super();
+        final long now = System.currentTimeMillis();
+        snapshot = new FileCopyProgressSnapshot(0, 0, 0, null, null, now, now);
+    }
+
+    /**
+     * Returns the latest progress.
+     * 
+     * @return Current snapshot - Never <code>null</code>.
+     */
+    public final FileCopyProgressSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void updateFile(final String sourceFile, final String destFile,
+            final int fileNo, final int fileSize) {
+        snapshot = new FileCopyProgressSnapshot(fileNo, fileSize, 0, sourceFile, destFile,
+                snapshot.getStartTime(), System.currentTimeMillis());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void skipFile(final String sourceFile, final String destFile,
+            final int fileNo, final int fileSize) {
+        snapshot = new FileCopyProgressSnapshot(fileNo, fileSize, fileSize, sourceFile,
+                destFile, snapshot.getStartTime(), snapshot.getFileStartTime());
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void updateByte(final int n) {
+        snapshot = snapshot.withByteNo(n);
+    }
+
+}
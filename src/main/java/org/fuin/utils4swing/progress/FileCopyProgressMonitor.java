@@ -17,11 +17,14 @@
  */
 package org.fuin.utils4swing.progress;
 
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 
 import javax.swing.JFrame;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 import javax.swing.WindowConstants;
 
 import org.fuin.utils4j.Cancelable;
@@ -32,7 +35,7 @@ import org.fuin.utils4swing.common.Utils4Swing;
 /**
  * A class to monitor the progress of a copying a list of files using frame.
  */
-public final class FileCopyProgressMonitor implements FileCopyProgressListener {
+public final class FileCopyProgressMonitor implements FileCopySkipListener {
 
     private static final String DEFAULT_TRANSFER_TEXT = "Transferring file $N of $M...";
 
@@ -42,6 +45,12 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
 
     private static final String DEFAULT_DESTINATION_LABEL = "Destination:";
 
+    private static final int SKIP_UPDATE_INTERVAL = 100;
+
+    private static final int MIN_DISPLAYED_FILE_SIZE = 10000;
+
+    private static final int BATCH_MAX_DELAY = 250;
+
     private final Cancelable cancelable;
 
     private final String title;
@@ -60,9 +69,33 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
 
     private boolean firstTime = true;
     
-    private int currentFile = 0;
+    private volatile int currentFile = 0;
     
-    private int currentByte = 0;
+    private volatile int currentByte = 0;
+
+    private FileCopyProgressModel model = null;
+
+    private int framesPerSecond = 0;
+
+    private int batchFileSize = 0;
+
+    private int batchMaxFiles = 0;
+
+    private boolean smallFile = false;
+
+    private int batchCount = 0;
+
+    private long batchBytes = 0;
+
+    private long batchStart = 0;
+
+    private String batchSourceFile = null;
+
+    private String batchDestFile = null;
+
+    private int batchFileNo = 0;
+
+    private volatile Timer batchTimer = null;
 
     /**
      * Constructor with basic arguments.
@@ -214,7 +247,102 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
         return currentFile;
     }
 
-    
+    /**
+     * Lets the panel poll the progress with a fixed frame rate instead of
+     * sending updates to the panel. The events only replace an immutable
+     * snapshot and the UI cost per second is constant - Independent of the
+     * number of files and bytes. Must be called before {@link #open()}. The
+     * batch mode has no effect if a frame rate is set.
+     * 
+     * @param framesPerSecond
+     *            Number of polls per second - A value less or equal zero
+     *            disables polling.
+     */
+    public final void setFramesPerSecond(final int framesPerSecond) {
+        if (!firstTime) {
+            throw new IllegalStateException("The monitor is already open!");
+        }
+        if (framesPerSecond > 0) {
+            this.framesPerSecond = framesPerSecond;
+            this.model = new FileCopyProgressModel();
+        } else {
+            this.framesPerSecond = 0;
+            this.model = null;
+        }
+    }
+
+    /**
+     * Returns the number of polls per second.
+     * 
+     * @return Frame rate or zero if the panel is not polling.
+     */
+    public final int getFramesPerSecond() {
+        return framesPerSecond;
+    }
+
+    /**
+     * Returns the latest progress if a frame rate is set.
+     * 
+     * @return Snapshot or <code>null</code> if the panel is not polling.
+     */
+    public final FileCopyProgressSnapshot getSnapshot() {
+        if (model == null) {
+            return null;
+        }
+        return model.getSnapshot();
+    }
+
+    /**
+     * Enables or disables the batch mode. Without batch mode the panel is not
+     * updated at all for files below 10000 bytes. In batch mode consecutive
+     * small files are collected into batches and the panel is updated once per
+     * batch with the current file number, the names of the last file and the
+     * total bytes of the batch. A batch is shown when it contains the
+     * maximum number of files, when it's older than a quarter second (Even if
+     * no further file arrives), when a large file starts or when the monitor
+     * is closed. Progress of a small file is not reported at all.
+     * 
+     * @param smallFileSize
+     *            Files below this size are collected into batches - A value
+     *            less or equal zero disables the batch mode.
+     * @param maxFiles
+     *            Maximum number of files in one batch - Must be greater than
+     *            zero.
+     */
+    public final void setBatchMode(final int smallFileSize, final int maxFiles) {
+        if (maxFiles <= 0) {
+            throw new IllegalArgumentException("The argument 'maxFiles' must be > 0: "
+                    + maxFiles);
+        }
+        this.batchFileSize = Math.max(0, smallFileSize);
+        this.batchMaxFiles = maxFiles;
+        this.smallFile = false;
+        this.batchCount = 0;
+    }
+
+    /**
+     * Returns if the batch mode is enabled.
+     * 
+     * @return If small files are collected into batches <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final boolean isBatchMode() {
+        return batchFileSize > 0;
+    }
+
+    /**
+     * Shows the files collected in the current batch immediately. Useful
+     * before the copy process waits for something else.
+     */
+    public final synchronized void flushBatch() {
+        if ((panel != null) && (batchCount > 0)) {
+            final int bytes = FileCopyProgressChannel.toInt(batchBytes);
+            panel.updateFile(batchSourceFile, batchDestFile, batchFileNo, bytes);
+            panel.setCurrentByte(bytes);
+        }
+        batchCount = 0;
+    }
+
     /**
      * Show the monitor dialog.If called outside the EDT this method will switch
      * to the UI thread using
@@ -256,6 +384,16 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
         panel.setCancelable(cancelable);
         panel.setDestText(destLabelText);
         panel.setSourceText(srcLabelText);
+        if (model != null) {
+            panel.setModel(model, framesPerSecond);
+        }
+        // Shows a batch that is not completed by further small files in time
+        batchTimer = new Timer(BATCH_MAX_DELAY, new ActionListener() {
+            public void actionPerformed(final ActionEvent e) {
+                flushBatch();
+            }
+        });
+        batchTimer.setRepeats(false);
         frame = Utils4Swing.createShowAndPosition(title, panel, false,
                 new ScreenCenterPositioner());
         frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
@@ -277,6 +415,7 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
      * <code>SwingUtilities.invokeAndWait(Runnable)</code>.
      */
     public final void close() {
+        flushBatch();
         if (SwingUtilities.isEventDispatchThread()) {
             closeIntern();
         } else {
@@ -293,6 +432,10 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
     }
 
     private final void closeIntern() {
+        if (batchTimer != null) {
+            batchTimer.stop();
+            batchTimer = null;
+        }
         if (frame != null) {
             frame.setVisible(false);
             frame.dispose();
@@ -318,11 +461,74 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
     public final void updateFile(final String sourceFile, final String destFile,
             final int currentFile, final int fileSize) {
         this.currentFile = currentFile;
-        if ((panel != null) && (fileSize >= 10000)) {
+        if (model != null) {
+            model.updateFile(sourceFile, destFile, currentFile, fileSize);
+            return;
+        }
+        if (batchFileSize > 0) {
+            smallFile = (fileSize < batchFileSize);
+            if (smallFile) {
+                addToBatch(sourceFile, destFile, fileSize);
+                return;
+            }
+            // Show the pending batch before the large file
+            flushBatch();
+        }
+        if ((panel != null) && ((batchFileSize > 0) || (fileSize >= MIN_DISPLAYED_FILE_SIZE))) {
             panel.updateFile(sourceFile, destFile, currentFile, fileSize);
         }
     }
 
+    private synchronized void addToBatch(final String sourceFile, final String destFile,
+            final int fileSize) {
+        final long now = System.currentTimeMillis();
+        if (batchCount == 0) {
+            batchBytes = 0;
+            batchStart = now;
+            final Timer timer = batchTimer;
+            if (timer != null) {
+                timer.restart();
+            }
+        }
+        batchCount++;
+        batchBytes = batchBytes + fileSize;
+        batchSourceFile = sourceFile;
+        batchDestFile = destFile;
+        batchFileNo = currentFile;
+        if ((batchCount >= batchMaxFiles) || (now - batchStart >= BATCH_MAX_DELAY)) {
+            flushBatch();
+        }
+    }
+
+    /**
+     * A file was skipped because it's already up to date. It's counted
+     * immediately, but the panel is only updated every few files to avoid
+     * flooding the EDT when thousands of files are skipped.
+     * 
+     * @param sourceFile
+     *            Name and path of the source file.
+     * @param destFile
+     *            Name and path of the destination file.
+     * @param currentFile
+     *            Number of the current file.
+     * @param fileSize
+     *            Size of the file.
+     */
+    public final void skipFile(final String sourceFile, final String destFile,
+            final int currentFile, final int fileSize) {
+        this.currentFile = currentFile;
+        if (model != null) {
+            model.skipFile(sourceFile, destFile, currentFile, fileSize);
+            return;
+        }
+        // The timer must not show an older batch after the skip
+        flushBatch();
+        if ((panel != null)
+                && ((currentFile % SKIP_UPDATE_INTERVAL == 0) || (currentFile >= fileMax))) {
+            panel.setCurrentFile(currentFile);
+        }
+    }
+
     /**
      * Updates the current byte number of the file transferred.If called outside
      * the EDT this method will switch to the UI thread using
@@ -333,6 +539,13 @@ public final class FileCopyProgressMonitor implements FileCopyProgressListener {
      */
     public final void updateByte(final int n) {
         this.currentByte = n;
+        if (model != null) {
+            model.updateByte(n);
+            return;
+        }
+        if (smallFile) {
+            return;
+        }
         if ((panel != null) && (n % 10000 == 0)) {
             panel.setCurrentByte(n);
         }
@@ -32,16 +32,18 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JProgressBar;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 import org.fuin.utils4j.Cancelable;
 import org.fuin.utils4swing.common.ScreenCenterPositioner;
 import org.fuin.utils4swing.common.Utils4Swing;
+import org.fuin.utils4swing.threadsafe.EdtExecutor;
 
 /**
  * A progress panel with two progress bars: One for the number of processed
  * files and a second for the number of transferred bytes for the current file.
  */
-public class FileCopyProgressPanel extends JPanel {
+public class FileCopyProgressPanel extends JPanel implements FileCopyProgressListener {
 
     private static final long serialVersionUID = 1L;
 
@@ -83,6 +85,12 @@ public class FileCopyProgressPanel extends JPanel {
 
     private JLabel labelDest = null;
 
+    private transient FileCopyProgressModel model = null;
+
+    private transient Timer modelTimer = null;
+
+    private transient FileCopyProgressSnapshot shownSnapshot = null;
+
     /**
      * No arguments Constructor.
      */
@@ -329,6 +337,41 @@ public class FileCopyProgressPanel extends JPanel {
         setMaxByteIntern(maxByte);
     }
 
+    private void setModelIntern(final FileCopyProgressModel model, final int framesPerSecond) {
+        if (modelTimer != null) {
+            modelTimer.stop();
+            modelTimer = null;
+        }
+        this.model = model;
+        this.shownSnapshot = null;
+        if (model != null) {
+            modelTimer = new Timer(Math.max(1, 1000 / framesPerSecond), new ActionListener() {
+                public void actionPerformed(final ActionEvent e) {
+                    showSnapshot();
+                }
+            });
+            modelTimer.setCoalesce(true);
+            if (isDisplayable()) {
+                modelTimer.start();
+            }
+        }
+    }
+
+    private void showSnapshot() {
+        final FileCopyProgressSnapshot snapshot = model.getSnapshot();
+        if (snapshot == shownSnapshot) {
+            return;
+        }
+        if ((shownSnapshot == null) || (snapshot.getFileNo() != shownSnapshot.getFileNo())
+                || (snapshot.getFileSize() != shownSnapshot.getFileSize())
+                || (snapshot.getSourceFile() != shownSnapshot.getSourceFile())) {
+            updateFileIntern(snapshot.getSourceFile(), snapshot.getDestFile(), snapshot
+                    .getFileNo(), snapshot.getFileSize());
+        }
+        setCurrentByteIntern(snapshot.getByteNo());
+        shownSnapshot = snapshot;
+    }
+
     private void setCancelableIntern(final Cancelable cancelable) {
         this.cancelable = cancelable;
         getButtonCancel().setEnabled(cancelable != null);
@@ -344,201 +387,130 @@ public class FileCopyProgressPanel extends JPanel {
 
     /**
      * Set the number of the current file. If called outside the EDT this method
-     * will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param n
      *            The N value in "N of M".
      */
     public final void setCurrentFile(final int n) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setCurrentFileIntern(n);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setCurrentFileIntern(n);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "currentFile"), new Runnable() {
+            public void run() {
+                setCurrentFileIntern(n);
             }
-        }
+        });
     }
 
     /**
      * Set the number of the max file.If called outside the EDT this method will
-     * switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param m
      *            The M value in "N of M".
      */
     public final void setMaxFile(final int m) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setMaxFileIntern(m);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setMaxFileIntern(m);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "maxFile"), new Runnable() {
+            public void run() {
+                setMaxFileIntern(m);
             }
-        }
+        });
     }
 
     /**
      * Set the name of the destination file currently copied.If called outside
      * the EDT this method will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * {@link EdtExecutor}.
      * 
      * @param destFile
      *            Filename with full path.
      */
     public final void setDestFile(final String destFile) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setDestFileIntern(destFile);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setDestFileIntern(destFile);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "destFile"), new Runnable() {
+            public void run() {
+                setDestFileIntern(destFile);
             }
-        }
+        });
     }
 
     /**
      * Sets the name of the source file currently copied.If called outside the
-     * EDT this method will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * EDT this method will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param srcFile
      *            Filename with full path.
      */
     public final void setSourceFile(final String srcFile) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setSourceFileIntern(srcFile);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setSourceFileIntern(srcFile);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "sourceFile"), new Runnable() {
+            public void run() {
+                setSourceFileIntern(srcFile);
             }
-        }
+        });
     }
 
     /**
      * Sets the title inside the panel. If called outside the EDT this method
-     * will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param title
      *            Title.
      */
     public final void setTitle(final String title) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setTitleIntern(title);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setTitleIntern(title);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "title"), new Runnable() {
+            public void run() {
+                setTitleIntern(title);
             }
-        }
+        });
     }
 
     /**
      * Set the number of the current byte transferred. If called outside the EDT
-     * this method will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * this method will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param n
      *            The N value in "N of M".
      */
     public final void setCurrentByte(final int n) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setCurrentByteIntern(n);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setCurrentByteIntern(n);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "currentByte"), new Runnable() {
+            public void run() {
+                setCurrentByteIntern(n);
             }
-        }
+        });
     }
 
     /**
      * Set the number of max bytes transferred.If called outside the EDT this
-     * method will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * method will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param m
      *            The M value in "N of M".
      */
     public final void setMaxByte(final int m) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setMaxByteIntern(m);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setMaxByteIntern(m);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "maxByte"), new Runnable() {
+            public void run() {
+                setMaxByteIntern(m);
             }
-        }
+        });
     }
 
     /**
      * Set the transfer text. Can contain two possible variables: $N = Current
      * file number, $M = Max file count. If called outside the EDT this method
-     * will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param transferText
      *            Text to display for file number "N of M".
      */
     public final void setTransferText(final String transferText) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setTransferTextIntern(transferText);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setTransferTextIntern(transferText);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "transferText"), new Runnable() {
+            public void run() {
+                setTransferTextIntern(transferText);
             }
-        }
+        });
     }
 
     /**
      * Set the file information for the currently transferred file. If called
      * outside the EDT this method will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * {@link EdtExecutor}.
      * 
      * @param sourceFile
      *            Source filename with full path.
@@ -551,19 +523,22 @@ public class FileCopyProgressPanel extends JPanel {
      */
     public final void updateFile(final String sourceFile, final String destFile,
             final int fileNo, final int maxByte) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            updateFileIntern(sourceFile, destFile, fileNo, maxByte);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        updateFileIntern(sourceFile, destFile, fileNo, maxByte);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "updateFile"), new Runnable() {
+            public void run() {
+                updateFileIntern(sourceFile, destFile, fileNo, maxByte);
             }
-        }
+        });
+    }
+
+    /**
+     * Same as {@link #setCurrentByte(int)}. If called outside the EDT this
+     * method will switch to the UI thread using {@link EdtExecutor}.
+     * 
+     * @param n
+     *            Byte number.
+     */
+    public final void updateByte(final int n) {
+        setCurrentByte(n);
     }
 
     /**
@@ -574,73 +549,88 @@ public class FileCopyProgressPanel extends JPanel {
      *            Listener or <code>null</code> if cancel is disabled.
      */
     public final void setCancelable(final Cancelable cancelable) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setCancelableIntern(cancelable);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setCancelableIntern(cancelable);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "cancelable"), new Runnable() {
+            public void run() {
+                setCancelableIntern(cancelable);
             }
-        }
+        });
     }
 
     /**
      * Set the text for the "Destination" label. If called outside the EDT this
-     * method will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * method will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param text
      *            Text for the label.
      */
     public final void setDestText(final String text) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setDestTextIntern(text);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setDestTextIntern(text);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "destText"), new Runnable() {
+            public void run() {
+                setDestTextIntern(text);
             }
-        }
+        });
     }
 
     /**
      * Set the text for the "Source" label. If called outside the EDT this
-     * method will switch to the UI thread using
-     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     * method will switch to the UI thread using {@link EdtExecutor}.
      * 
      * @param text
      *            Text for the label.
      */
     public final void setSourceText(final String text) {
-        if (SwingUtilities.isEventDispatchThread()) {
-            setSourceTextIntern(text);
-        } else {
-            try {
-                SwingUtilities.invokeLater(new Runnable() {
-                    public void run() {
-                        setSourceTextIntern(text);
-                    }
-                });
-            } catch (final Exception ex) {
-                ignore();
+        EdtExecutor.execute(EdtExecutor.key(this, "sourceText"), new Runnable() {
+            public void run() {
+                setSourceTextIntern(text);
+            }
+        });
+    }
+
+    /**
+     * Sets a model that is polled with a fixed frame rate instead of being
+     * updated by the setters. The panel only repaints if the snapshot of the
+     * model changed since the last frame. Polling is only active while the
+     * panel is displayable. If called outside the EDT this method will switch
+     * to the UI thread using {@link EdtExecutor}.
+     * 
+     * @param model
+     *            Model to poll or <code>null</code> to stop polling.
+     * @param framesPerSecond
+     *            Number of polls per second - Must be greater than zero if a
+     *            model is set.
+     */
+    public final void setModel(final FileCopyProgressModel model, final int framesPerSecond) {
+        if ((model != null) && (framesPerSecond <= 0)) {
+            throw new IllegalArgumentException(
+                    "The argument 'framesPerSecond' must be > 0: " + framesPerSecond);
+        }
+        EdtExecutor.execute(EdtExecutor.key(this, "model"), new Runnable() {
+            public void run() {
+                setModelIntern(model, framesPerSecond);
             }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void addNotify() {
+        super.addNotify();
+        if (modelTimer != null) {
+            modelTimer.start();
         }
     }
 
-    private static void ignore() {
-        // Dummy method to satisfy Checkstyle's empty block check...
+    /**
+     * {@inheritDoc}
+     */
+    public void removeNotify() {
+        if (modelTimer != null) {
+            modelTimer.stop();
+        }
+        super.removeNotify();
     }
-    
+
     /**
      * Main method to test the panel. Only for testing purposes.
      * 
@@ -0,0 +1,282 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Decorator that records all progress events with a timestamp into a compact
+ * binary file and forwards them to another listener. A recording can be played
+ * back with a {@link FileCopyProgressReplayer} to reproduce the timing of a
+ * transfer. The records are collected in a buffer and written with a single
+ * channel operation when the buffer is full, so recording costs only a few
+ * bytes of memory copying per event.<br>
+ * <br>
+ * If writing the recording fails the recorder stops recording silently and
+ * only forwards the events - The error is thrown by {@link #close()}.
+ */
+public final class FileCopyProgressRecorder implements FileCopySkipListener {
+
+    /** Marks the beginning of a recording. */
+    static final byte[] MAGIC = new byte[] { 'F', 'P', 'R', '1' };
+
+    /** Record type for <code>updateFile</code>. */
+    static final int TYPE_FILE = 1;
+
+    /** Record type for <code>updateByte</code>. */
+    static final int TYPE_BYTE = 2;
+
+    /** Record type for <code>skipFile</code>. */
+    static final int TYPE_SKIP = 3;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Type byte, time delta and two numbers - All variable length. */
+    private static final int MAX_FIXED_RECORD_SIZE = 1 + 10 + 5 + 5;
+
+    private final FileCopyProgressListener delegate;
+
+    private final FileOutputStream out;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer buf;
+
+    private long lastTime;
+
+    private long recordCount = 0;
+
+    private IOException error = null;
+
+    private boolean closed = false;
+
+    /**
+     * Constructor with recording file and listener to forward the events to.
+     * 
+     * @param file
+     *            File to record into - An existing file will be overwritten.
+     * @param delegate
+     *            Listener that receives all events - Can be <code>null</code>
+     *            to record only.
+     * 
+     * @throws IOException
+     *             Error creating the file.
+     */
+    public FileCopyProgressRecorder(final File file, final FileCopyProgressListener delegate)
+            throws IOException {
+        super();
+        Utils4J.checkNotNull("file", file);
+        this.delegate = delegate;
+        this.out = new FileOutputStream(file);
+        this.channel = out.getChannel();
+        this.buf = ByteBuffer.allocate(BUFFER_SIZE);
+        this.lastTime = System.currentTimeMillis();
+        buf.put(MAGIC);
+        buf.putLong(lastTime);
+    }
+
+    /**
+     * Returns the number of events recorded so far.
+     * 
+     * @return Number of records.
+     */
+    public final synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void updateFile(final String sourceFile, final String destFile,
+            final int fileNo, final int fileSize) {
+        record(TYPE_FILE, sourceFile, destFile, fileNo, fileSize);
+        if (delegate != null) {
+            delegate.updateFile(sourceFile, destFile, fileNo, fileSize);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void skipFile(final String sourceFile, final String destFile,
+            final int fileNo, final int fileSize) {
+        record(TYPE_SKIP, sourceFile, destFile, fileNo, fileSize);
+        skip(delegate, sourceFile, destFile, fileNo, fileSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final void updateByte(final int n) {
+        synchronized (this) {
+            if (start(TYPE_BYTE)) {
+                putVarInt(n);
+            }
+        }
+        if (delegate != null) {
+            delegate.updateByte(n);
+        }
+    }
+
+    /**
+     * Writes all buffered records and closes the file. Calling this method
+     * more than once has no effect.
+     * 
+     * @throws IOException
+     *             Error writing the recording - Also thrown if an error
+     *             happened earlier while recording.
+     */
+    public final synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (error == null) {
+                flush();
+            }
+        } catch (final IOException ex) {
+            error = ex;
+        } finally {
+            out.close();
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Forwards a skipped file to a listener the same way
+     * <code>FileCopier</code> does.
+     * 
+     * @param listener
+     *            Listener to inform - Can be <code>null</code>.
+     * @param sourceFile
+     *            Name and path of the source file.
+     * @param destFile
+     *            Name and path of the destination file.
+     * @param fileNo
+     *            Number of the current file.
+     * @param fileSize
+     *            Size of the file.
+     */
+    static void skip(final FileCopyProgressListener listener, final String sourceFile,
+            final String destFile, final int fileNo, final int fileSize) {
+        if (listener instanceof FileCopySkipListener) {
+            ((FileCopySkipListener) listener).skipFile(sourceFile, destFile, fileNo, fileSize);
+        } else if (listener != null) {
+            listener.updateFile(sourceFile, destFile, fileNo, fileSize);
+            listener.updateByte(fileSize);
+        }
+    }
+
+    private synchronized void record(final int type, final String sourceFile,
+            final String destFile, final int fileNo, final int fileSize) {
+        if (start(type)) {
+            putVarInt(fileNo);
+            putVarInt(fileSize);
+            putString(sourceFile);
+            putString(destFile);
+        }
+    }
+
+    private boolean start(final int type) {
+        if (closed || (error != null)) {
+            return false;
+        }
+        try {
+            ensure(MAX_FIXED_RECORD_SIZE);
+        } catch (final IOException ex) {
+            error = ex;
+            return false;
+        }
+        final long now = System.currentTimeMillis();
+        buf.put((byte) type);
+        // The clock may be set back - Never record negative deltas
+        putVarLong(Math.max(0, now - lastTime));
+        lastTime = Math.max(lastTime, now);
+        recordCount++;
+        return true;
+    }
+
+    private void putString(final String str) {
+        final byte[] bytes = toBytes(str);
+        try {
+            ensure(5 + bytes.length);
+            putVarInt(bytes.length);
+            if (bytes.length > buf.capacity()) {
+                flush();
+                write(ByteBuffer.wrap(bytes));
+            } else {
+                buf.put(bytes);
+            }
+        } catch (final IOException ex) {
+            error = ex;
+        }
+    }
+
+    private void putVarInt(final int value) {
+        putVarLong(value & 0xFFFFFFFFL);
+    }
+
+    private void putVarLong(final long value) {
+        long v = value;
+        while ((v & ~0x7FL) != 0) {
+            buf.put((byte) ((v & 0x7F) | 0x80));
+            v = v >>> 7;
+        }
+        buf.put((byte) v);
+    }
+
+    private void ensure(final int size) throws IOException {
+        if (buf.remaining() < size) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        buf.flip();
+        write(buf);
+        buf.clear();
+    }
+
+    private void write(final ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    private static byte[] toBytes(final String str) {
+        if (str == null) {
+            return new byte[0];
+        }
+        try {
+            return str.getBytes("UTF-8");
+        } catch (final UnsupportedEncodingException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+}
@@ -0,0 +1,245 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.fuin.utils4j.Cancelable;
+import org.fuin.utils4j.CancelableVolatile;
+import org.fuin.utils4j.Utils4J;
+import org.fuin.utils4swing.common.Utils4Swing;
+
+/**
+ * Plays back a recording created with a {@link FileCopyProgressRecorder}. The
+ * events are sent to a listener (for example a
+ * <code>FileCopyProgressMonitor</code> or a <code>FileCopyProgressPanel</code>)
+ * with the original timing, a faster or slower timing or as fast as possible.
+ * Useful to reproduce problems reported by users and as a deterministic load
+ * for the UI.
+ */
+public final class FileCopyProgressReplayer {
+
+    private final File file;
+
+    private double speed = 1.0;
+
+    /**
+     * Constructor with recording.
+     * 
+     * @param file
+     *            File created by a <code>FileCopyProgressRecorder</code>.
+     */
+    public FileCopyProgressReplayer(final File file) {
+        super();
+        Utils4J.checkNotNull("file", file);
+        this.file = file;
+    }
+
+    /**
+     * Returns the speed factor.
+     * 
+     * @return Factor - <code>1.0</code> is the original speed and
+     *         <code>0.0</code> means as fast as possible.
+     */
+    public final double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * Sets the speed factor. A value of <code>2.0</code> replays twice as fast
+     * as recorded.
+     * 
+     * @param speed
+     *            Factor - <code>0.0</code> replays without any delay.
+     */
+    public final void setSpeed(final double speed) {
+        if (speed < 0) {
+            throw new IllegalArgumentException("The argument 'speed' must be >= 0: " + speed);
+        }
+        this.speed = speed;
+    }
+
+    /**
+     * Returns the highest file number in the recording without any delay.
+     * Useful as "max file" value for a <code>FileCopyProgressMonitor</code>.
+     * 
+     * @return File number.
+     * 
+     * @throws IOException
+     *             Error reading the recording.
+     */
+    public final int getMaxFileNo() throws IOException {
+        final int[] max = new int[1];
+        read(new FileCopyProgressListener() {
+            public void updateFile(final String sourceFile, final String destFile,
+                    final int fileNo, final int fileSize) {
+                max[0] = Math.max(max[0], fileNo);
+            }
+
+            public void updateByte(final int n) {
+                ignore();
+            }
+        }, null, 0.0);
+        return max[0];
+    }
+
+    /**
+     * Plays the recording back. The method returns after the last event was
+     * sent or if the replay was canceled.
+     * 
+     * @param listener
+     *            Listener that receives the events.
+     * @param cancelable
+     *            Cancel tracker - Can be <code>null</code>.
+     * 
+     * @return Number of events sent to the listener.
+     * 
+     * @throws InterruptedIOException
+     *             The thread was interrupted while waiting for the next event.
+     * @throws IOException
+     *             Error reading the recording.
+     */
+    public final long replay(final FileCopyProgressListener listener,
+            final Cancelable cancelable) throws IOException {
+        Utils4J.checkNotNull("listener", listener);
+        return read(listener, cancelable, speed);
+    }
+
+    private long read(final FileCopyProgressListener listener, final Cancelable cancelable,
+            final double factor) throws IOException {
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            final byte[] magic = new byte[FileCopyProgressRecorder.MAGIC.length];
+            in.readFully(magic);
+            for (int i = 0; i < magic.length; i++) {
+                if (magic[i] != FileCopyProgressRecorder.MAGIC[i]) {
+                    throw new IOException("Not a progress recording: " + file);
+                }
+            }
+            in.readLong();
+            final long start = System.currentTimeMillis();
+            long elapsed = 0;
+            long count = 0;
+            int type;
+            while ((type = in.read()) >= 0) {
+                if ((cancelable != null) && cancelable.isCanceled()) {
+                    break;
+                }
+                elapsed = elapsed + readVarLong(in);
+                if (factor > 0) {
+                    waitUntil(start + (long) (elapsed / factor));
+                }
+                if (type == FileCopyProgressRecorder.TYPE_BYTE) {
+                    listener.updateByte((int) readVarLong(in));
+                } else if ((type == FileCopyProgressRecorder.TYPE_FILE)
+                        || (type == FileCopyProgressRecorder.TYPE_SKIP)) {
+                    final int fileNo = (int) readVarLong(in);
+                    final int fileSize = (int) readVarLong(in);
+                    final String sourceFile = readString(in);
+                    final String destFile = readString(in);
+                    if (type == FileCopyProgressRecorder.TYPE_FILE) {
+                        listener.updateFile(sourceFile, destFile, fileNo, fileSize);
+                    } else {
+                        FileCopyProgressRecorder.skip(listener, sourceFile, destFile,
+                                fileNo, fileSize);
+                    }
+                } else {
+                    throw new IOException("Unknown record type " + type + ": " + file);
+                }
+                count++;
+            }
+            return count;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void waitUntil(final long time) throws InterruptedIOException {
+        final long wait = time - System.currentTimeMillis();
+        if (wait > 0) {
+            try {
+                Thread.sleep(wait);
+            } catch (final InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Replay interrupted");
+            }
+        }
+    }
+
+    private static long readVarLong(final DataInputStream in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        while (true) {
+            final int b = in.read();
+            if (b < 0) {
+                throw new EOFException("Truncated record");
+            }
+            value = value | ((long) (b & 0x7F) << shift);
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+            shift = shift + 7;
+        }
+    }
+
+    private static String readString(final DataInputStream in) throws IOException {
+        final byte[] bytes = new byte[(int) readVarLong(in)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+    /**
+     * Replays a recording in a <code>FileCopyProgressMonitor</code>. Only for
+     * testing purposes.
+     * 
+     * @param args
+     *            Recording file and optional speed factor.
+     * 
+     * @throws Exception
+     *             Error replaying the file.
+     */
+    public static void main(final String[] args) throws Exception {
+        Utils4Swing.initSystemLookAndFeel();
+        final FileCopyProgressReplayer replayer = new FileCopyProgressReplayer(new File(
+                args[0]));
+        if (args.length > 1) {
+            replayer.setSpeed(Double.parseDouble(args[1]));
+        }
+        final Cancelable cancelable = new CancelableVolatile();
+        final FileCopyProgressMonitor monitor = new FileCopyProgressMonitor(cancelable,
+                "Replay " + args[0], replayer.getMaxFileNo());
+        monitor.open();
+        try {
+            replayer.replay(monitor, cancelable);
+        } finally {
+            monitor.close();
+        }
+    }
+
+}
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+/**
+ * Immutable state of a file copy progress at one point in time. All values of
+ * a snapshot belong together, so a reader never sees the byte count of one
+ * file combined with the name of another one.
+ */
+public final class FileCopyProgressSnapshot {
+
+    private final int fileNo;
+
+    private final int fileSize;
+
+    private final int byteNo;
+
+    private final String sourceFile;
+
+    private final String destFile;
+
+    private final long startTime;
+
+    private final long fileStartTime;
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param fileNo
+     *            Number of the current file.
+     * @param fileSize
+     *            Size of the current file.
+     * @param byteNo
+     *            Number of bytes of the current file transferred so far.
+     * @param sourceFile
+     *            Name and path of the source file - Can be <code>null</code>.
+     * @param destFile
+     *            Name and path of the destination file - Can be
+     *            <code>null</code>.
+     * @param startTime
+     *            Time the whole transfer started (milliseconds since
+     *            1970-01-01).
+     * @param fileStartTime
+     *            Time the current file transfer started (milliseconds since
+     *            1970-01-01).
+     */
+    public FileCopyProgressSnapshot(final int fileNo, final int fileSize, final int byteNo,
+            final String sourceFile, final String destFile, final long startTime,
+            final long fileStartTime) {
+        super();
+        this.fileNo = fileNo;
+        this.fileSize = fileSize;
+        this.byteNo = byteNo;
+        this.sourceFile = sourceFile;
+        this.destFile = destFile;
+        this.startTime = startTime;
+        this.fileStartTime = fileStartTime;
+    }
+
+    /**
+     * Returns the number of the current file.
+     * 
+     * @return File number.
+     */
+    public final int getFileNo() {
+        return fileNo;
+    }
+
+    /**
+     * Returns the size of the current file.
+     * 
+     * @return Size in bytes.
+     */
+    public final int getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * Returns the number of bytes of the current file transferred so far.
+     * 
+     * @return Byte number.
+     */
+    public final int getByteNo() {
+        return byteNo;
+    }
+
+    /**
+     * Returns the name and path of the source file.
+     * 
+     * @return Source file or <code>null</code> if no file was started yet.
+     */
+    public final String getSourceFile() {
+        return sourceFile;
+    }
+
+    /**
+     * Returns the name and path of the destination file.
+     * 
+     * @return Destination file or <code>null</code> if no file was started
+     *         yet.
+     */
+    public final String getDestFile() {
+        return destFile;
+    }
+
+    /**
+     * Returns the time the whole transfer started.
+     * 
+     * @return Milliseconds since 1970-01-01.
+     */
+    public final long getStartTime() {
+        return startTime;
+    }
+
+    /**
+     * Returns the time the current file transfer started.
+     * 
+     * @return Milliseconds since 1970-01-01.
+     */
+    public final long getFileStartTime() {
+        return fileStartTime;
+    }
+
+    /**
+     * Returns a copy with a different byte number.
+     * 
+     * @param n
+     *            New byte number.
+     * 
+     * @return New snapshot.
+     */
+    final FileCopyProgressSnapshot withByteNo(final int n) {
+        return new FileCopyProgressSnapshot(fileNo, fileSize, n, sourceFile, destFile,
+                startTime, fileStartTime);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public final String toString() {
+        return "file " + fileNo + ", byte " + byteNo + " of " + fileSize + ": " + sourceFile
+                + " => " + destFile;
+    }
+
+}
@@ -0,0 +1,41 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+/**
+ * Gets informed about file copy progress including files that are skipped
+ * because they did not change.
+ */
+public interface FileCopySkipListener extends FileCopyProgressListener {
+
+    /**
+     * A file was not transferred because the destination is already up to
+     * date. Counts as a completely transferred file.
+     * 
+     * @param sourceFile
+     *            Name and path of the source file.
+     * @param destFile
+     *            Name and path of the destination file.
+     * @param fileNo
+     *            Number of the current file.
+     * @param fileSize
+     *            Size of the file.
+     */
+    public void skipFile(String sourceFile, String destFile, int fileNo, int fileSize);
+
+}
@@ -0,0 +1,463 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Index of file states (path, size, last modification time and MD5 hash of
+ * the content) used to skip files that did not change since the last copy.
+ * The entries are held in memory in an open addressing hash table made of
+ * plain arrays, so even an index with a million entries only needs one
+ * <code>String</code> per entry and a lookup is a single hash probe. The
+ * index is stored on disk in a compact binary format with the paths sorted
+ * and prefix compressed. All methods are thread safe.
+ */
+public final class FileStateIndex {
+
+    /** Length of the content hash in bytes. */
+    public static final int HASH_LENGTH = 16;
+
+    private static final int MAGIC = 0x46534931; // "FSI1"
+
+    private static final int MIN_CAPACITY = 16;
+
+    private String[] keys;
+
+    private long[] sizes;
+
+    private long[] times;
+
+    private byte[] hashes;
+
+    private int count;
+
+    /**
+     * Default constructor.
+     */
+    public FileStateIndex() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Constructor with expected number of entries.
+     * 
+     * @param expectedSize
+     *            Number of entries the index should hold without resizing.
+     */
+    public FileStateIndex(final int expectedSize) {
+        super();
+        allocate(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(final int size) {
+        int capacity = MIN_CAPACITY;
+        // Keep the load factor below 2/3
+        while (capacity * 2 < size * 3) {
+            capacity = capacity * 2;
+        }
+        return capacity;
+    }
+
+    private void allocate(final int capacity) {
+        keys = new String[capacity];
+        sizes = new long[capacity];
+        times = new long[capacity];
+        hashes = new byte[capacity * HASH_LENGTH];
+        count = 0;
+    }
+
+    private static int slot(final String key, final int mask) {
+        final int h = key.hashCode();
+        // Spread the bits as many paths share a long prefix
+        return (h ^ (h >>> 16) ^ (h >>> 7)) & mask;
+    }
+
+    private int indexOf(final String key) {
+        final int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (keys[i] != null) {
+            if (keys[i].equals(key)) {
+                return i;
+            }
+            i = (i + 1) & mask;
+        }
+        return -(i + 1);
+    }
+
+    /**
+     * Returns the number of entries.
+     * 
+     * @return Number of entries.
+     */
+    public final synchronized int size() {
+        return count;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public final synchronized void clear() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Returns if an entry for the path exists.
+     * 
+     * @param path
+     *            Path to find.
+     * 
+     * @return If the index contains the path <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final synchronized boolean contains(final String path) {
+        Utils4J.checkNotNull("path", path);
+        return indexOf(path) >= 0;
+    }
+
+    /**
+     * Returns the size of a file.
+     * 
+     * @param path
+     *            Path to find.
+     * 
+     * @return Size or <code>-1</code> if the path is unknown.
+     */
+    public final synchronized long getSize(final String path) {
+        Utils4J.checkNotNull("path", path);
+        final int i = indexOf(path);
+        if (i < 0) {
+            return -1;
+        }
+        return sizes[i];
+    }
+
+    /**
+     * Returns the last modification time of a file.
+     * 
+     * @param path
+     *            Path to find.
+     * 
+     * @return Time or <code>-1</code> if the path is unknown.
+     */
+    public final synchronized long getLastModified(final String path) {
+        Utils4J.checkNotNull("path", path);
+        final int i = indexOf(path);
+        if (i < 0) {
+            return -1;
+        }
+        return times[i];
+    }
+
+    /**
+     * Returns the content hash of a file.
+     * 
+     * @param path
+     *            Path to find.
+     * 
+     * @return Copy of the MD5 hash or <code>null</code> if the path is unknown.
+     */
+    public final synchronized byte[] getHash(final String path) {
+        Utils4J.checkNotNull("path", path);
+        final int i = indexOf(path);
+        if (i < 0) {
+            return null;
+        }
+        final byte[] hash = new byte[HASH_LENGTH];
+        System.arraycopy(hashes, i * HASH_LENGTH, hash, 0, HASH_LENGTH);
+        return hash;
+    }
+
+    /**
+     * Returns if a file still has the size and modification time stored in
+     * the index.
+     * 
+     * @param path
+     *            Path of the entry.
+     * @param file
+     *            File to check.
+     * 
+     * @return If the file exists and matches the entry <code>true</code>
+     *         else <code>false</code>.
+     */
+    public final synchronized boolean matches(final String path, final File file) {
+        Utils4J.checkNotNull("path", path);
+        Utils4J.checkNotNull("file", file);
+        final int i = indexOf(path);
+        if (i < 0) {
+            return false;
+        }
+        return file.isFile() && (file.length() == sizes[i])
+                && (file.lastModified() == times[i]);
+    }
+
+    /**
+     * Adds or replaces an entry.
+     * 
+     * @param path
+     *            Path of the file.
+     * @param size
+     *            Size of the file.
+     * @param lastModified
+     *            Last modification time of the file.
+     * @param hash
+     *            MD5 hash of the content.
+     */
+    public final synchronized void put(final String path, final long size,
+            final long lastModified, final byte[] hash) {
+        Utils4J.checkNotNull("path", path);
+        Utils4J.checkNotNull("hash", hash);
+        if (hash.length != HASH_LENGTH) {
+            throw new IllegalArgumentException("The argument 'hash' must have a length of "
+                    + HASH_LENGTH + ": " + hash.length);
+        }
+        int i = indexOf(path);
+        if (i < 0) {
+            if ((count + 1) * 3 > keys.length * 2) {
+                resize(keys.length * 2);
+                i = indexOf(path);
+            }
+            i = -(i + 1);
+            keys[i] = path;
+            count++;
+        }
+        sizes[i] = size;
+        times[i] = lastModified;
+        System.arraycopy(hash, 0, hashes, i * HASH_LENGTH, HASH_LENGTH);
+    }
+
+    /**
+     * Removes an entry.
+     * 
+     * @param path
+     *            Path of the file.
+     * 
+     * @return If the entry existed <code>true</code> else <code>false</code>.
+     */
+    public final synchronized boolean remove(final String path) {
+        Utils4J.checkNotNull("path", path);
+        int i = indexOf(path);
+        if (i < 0) {
+            return false;
+        }
+        // Shift following entries of the same probe sequence back
+        final int mask = keys.length - 1;
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == null) {
+                break;
+            }
+            final int k = slot(keys[j], mask);
+            final boolean between;
+            if (i <= j) {
+                between = (i < k) && (k <= j);
+            } else {
+                between = (i < k) || (k <= j);
+            }
+            if (!between) {
+                move(j, i);
+                i = j;
+            }
+        }
+        keys[i] = null;
+        count--;
+        return true;
+    }
+
+    private void move(final int from, final int to) {
+        keys[to] = keys[from];
+        sizes[to] = sizes[from];
+        times[to] = times[from];
+        System.arraycopy(hashes, from * HASH_LENGTH, hashes, to * HASH_LENGTH, HASH_LENGTH);
+    }
+
+    private void resize(final int capacity) {
+        final String[] oldKeys = keys;
+        final long[] oldSizes = sizes;
+        final long[] oldTimes = times;
+        final byte[] oldHashes = hashes;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != null) {
+                final int j = -(indexOf(oldKeys[i]) + 1);
+                keys[j] = oldKeys[i];
+                sizes[j] = oldSizes[i];
+                times[j] = oldTimes[i];
+                System.arraycopy(oldHashes, i * HASH_LENGTH, hashes, j * HASH_LENGTH,
+                        HASH_LENGTH);
+                count++;
+            }
+        }
+    }
+
+    /**
+     * Writes the index to a file. The data is written to a temporary file
+     * first that replaces the target file when complete.
+     * 
+     * @param file
+     *            File to write.
+     * 
+     * @throws IOException
+     *             Error writing the file.
+     */
+    public final synchronized void save(final File file) throws IOException {
+        Utils4J.checkNotNull("file", file);
+        final String[] sorted = new String[count];
+        final int[] slots = new int[count];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                sorted[n++] = keys[i];
+            }
+        }
+        Arrays.sort(sorted);
+        for (int i = 0; i < sorted.length; i++) {
+            slots[i] = indexOf(sorted[i]);
+        }
+
+        final File tmp = new File(file.getPath() + ".tmp");
+        final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+                new FileOutputStream(tmp)));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(count);
+            String last = "";
+            for (int i = 0; i < sorted.length; i++) {
+                final String key = sorted[i];
+                final int prefix = commonPrefix(last, key);
+                out.writeShort(prefix);
+                out.writeUTF(key.substring(prefix));
+                out.writeLong(sizes[slots[i]]);
+                out.writeLong(times[slots[i]]);
+                out.write(hashes, slots[i] * HASH_LENGTH, HASH_LENGTH);
+                last = key;
+            }
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            tmp.delete();
+            throw new IOException("Cannot replace index file: " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+    }
+
+    private static int commonPrefix(final String a, final String b) {
+        final int max = Math.min(Math.min(a.length(), b.length()), Short.MAX_VALUE);
+        int i = 0;
+        while ((i < max) && (a.charAt(i) == b.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Reads an index from a file.
+     * 
+     * @param file
+     *            File to read.
+     * 
+     * @return New index.
+     * 
+     * @throws IOException
+     *             Error reading the file or the file is not an index.
+     */
+    public static FileStateIndex load(final File file) throws IOException {
+        Utils4J.checkNotNull("file", file);
+        final DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new FileInputStream(file)));
+        try {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a file state index: " + file);
+            }
+            final int size = in.readInt();
+            final FileStateIndex index = new FileStateIndex(size);
+            final byte[] hash = new byte[HASH_LENGTH];
+            String last = "";
+            for (int i = 0; i < size; i++) {
+                final int prefix = in.readShort();
+                final String key = last.substring(0, prefix) + in.readUTF();
+                final long length = in.readLong();
+                final long time = in.readLong();
+                in.readFully(hash);
+                index.put(key, length, time, hash);
+                last = key;
+            }
+            return index;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Creates a new MD5 digest.
+     * 
+     * @return Digest.
+     */
+    static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    /**
+     * Calculates the MD5 hash of a file's content.
+     * 
+     * @param file
+     *            File to read.
+     * 
+     * @return Hash.
+     * 
+     * @throws IOException
+     *             Error reading the file.
+     */
+    public static byte[] hash(final File file) throws IOException {
+        Utils4J.checkNotNull("file", file);
+        final MessageDigest md = createDigest();
+        final InputStream in = new FileInputStream(file);
+        try {
+            final byte[] buf = new byte[FileCopier.DEFAULT_BUFFER_SIZE];
+            int count;
+            while ((count = in.read(buf)) > 0) {
+                md.update(buf, 0, count);
+            }
+        } finally {
+            in.close();
+        }
+        return md.digest();
+    }
+
+}
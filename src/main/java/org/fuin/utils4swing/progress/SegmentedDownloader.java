@@ -0,0 +1,537 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import org.fuin.utils4j.Cancelable;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Downloads a resource over HTTP using several parallel connections. The
+ * resource is split into segments that are requested with a
+ * <code>Range</code> header and written into a preallocated file. A segment
+ * that fails is retried on its own, continuing after the last byte that was
+ * already written. The total number of bytes received by all connections is
+ * reported to a <code>FileCopyProgressListener</code>. Every range request
+ * carries an <code>If-Range</code> header with the validator of the
+ * <code>HEAD</code> response and the returned <code>Content-Range</code> is
+ * checked, so a resource that changes during the download fails instead of
+ * producing a mixed file. If the server does not support <code>HEAD</code> or
+ * ranges or the resource is small, a single connection is used.
+ */
+public final class SegmentedDownloader {
+
+    /** Default number of parallel connections. */
+    public static final int DEFAULT_CONNECTION_COUNT = 4;
+
+    /** Default minimum size of a segment. */
+    public static final long DEFAULT_MIN_SEGMENT_SIZE = 1024 * 1024;
+
+    /** Default number of retries per segment. */
+    public static final int DEFAULT_MAX_RETRIES = 3;
+
+    private static final int BUFFER_SIZE = 32 * 1024;
+
+    private final FileCopyProgressListener listener;
+
+    private final Cancelable cancelable;
+
+    private int connectionCount = DEFAULT_CONNECTION_COUNT;
+
+    private long minSegmentSize = DEFAULT_MIN_SEGMENT_SIZE;
+
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+
+    /**
+     * Constructor with listener and cancelable.
+     * 
+     * @param listener
+     *            Listener to inform about progress - Can be <code>null</code>.
+     * @param cancelable
+     *            Cancel tracker - Can be <code>null</code> if the download
+     *            cannot be canceled.
+     */
+    public SegmentedDownloader(final FileCopyProgressListener listener,
+            final Cancelable cancelable) {
+        super();
+        this.listener = listener;
+        this.cancelable = cancelable;
+    }
+
+    /**
+     * Returns the maximum number of parallel connections.
+     * 
+     * @return Number of connections.
+     */
+    public final int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Sets the maximum number of parallel connections.
+     * 
+     * @param connectionCount
+     *            Number of connections - Must be greater than zero.
+     */
+    public final void setConnectionCount(final int connectionCount) {
+        if (connectionCount <= 0) {
+            throw new IllegalArgumentException("The argument 'connectionCount' must be > 0: "
+                    + connectionCount);
+        }
+        this.connectionCount = connectionCount;
+    }
+
+    /**
+     * Returns the minimum size of a segment. Resources smaller than two
+     * segments are downloaded with a single connection.
+     * 
+     * @return Size in bytes.
+     */
+    public final long getMinSegmentSize() {
+        return minSegmentSize;
+    }
+
+    /**
+     * Sets the minimum size of a segment.
+     * 
+     * @param minSegmentSize
+     *            Size in bytes - Must be greater than zero.
+     */
+    public final void setMinSegmentSize(final long minSegmentSize) {
+        if (minSegmentSize <= 0) {
+            throw new IllegalArgumentException("The argument 'minSegmentSize' must be > 0: "
+                    + minSegmentSize);
+        }
+        this.minSegmentSize = minSegmentSize;
+    }
+
+    /**
+     * Returns how often a failed segment is retried.
+     * 
+     * @return Number of retries.
+     */
+    public final int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Sets how often a failed segment is retried.
+     * 
+     * @param maxRetries
+     *            Number of retries - Zero or more.
+     */
+    public final void setMaxRetries(final int maxRetries) {
+        if (maxRetries < 0) {
+            throw new IllegalArgumentException("The argument 'maxRetries' must be >= 0: "
+                    + maxRetries);
+        }
+        this.maxRetries = maxRetries;
+    }
+
+    /**
+     * Downloads a resource into a file.
+     * 
+     * @param url
+     *            HTTP URL of the resource.
+     * @param dest
+     *            Destination file - Will be overwritten if it already exists.
+     * @param fileNo
+     *            Number of the file reported to the listener.
+     * 
+     * @return Number of bytes downloaded.
+     * 
+     * @throws FileCopyCanceledException
+     *             The download was canceled - The destination file has been
+     *             removed.
+     * @throws IOException
+     *             Error downloading - The destination file has been removed.
+     */
+    public final long download(final URL url, final File dest, final int fileNo)
+            throws IOException {
+        Utils4J.checkNotNull("url", url);
+        Utils4J.checkNotNull("dest", dest);
+
+        final HttpURLConnection head = (HttpURLConnection) url.openConnection();
+        long length = -1;
+        boolean ranges = false;
+        String validator = null;
+        try {
+            head.setRequestMethod("HEAD");
+            // Servers without HEAD (405, 501...) are handled by a single GET
+            if (head.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                length = parseLength(head.getHeaderField("Content-Length"));
+                ranges = "bytes".equalsIgnoreCase(head.getHeaderField("Accept-Ranges"));
+                validator = getValidator(head);
+            }
+        } finally {
+            head.disconnect();
+        }
+
+        if (!ranges || (length < 2 * minSegmentSize)) {
+            final FileCopier copier = new FileCopier(listener, cancelable);
+            final URLConnection conn = url.openConnection();
+            final InputStream in = conn.getInputStream();
+            if (length < 0) {
+                length = parseLength(conn.getHeaderField("Content-Length"));
+            }
+            copier.copy(in, url.toExternalForm(), length, dest, fileNo);
+            return dest.length();
+        }
+
+        if (listener != null) {
+            listener.updateFile(url.toExternalForm(), dest.getPath(), fileNo,
+                    FileCopyProgressChannel.toInt(length));
+        }
+        final RandomAccessFile raf = new RandomAccessFile(dest, "rw");
+        boolean ok = false;
+        try {
+            raf.setLength(length);
+            final Download download = new Download(url, raf.getChannel(), length,
+                    validator);
+            final Thread[] threads = new Thread[Math.min(connectionCount,
+                    download.segmentCount) - 1];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(download, "SegmentedDownloader-" + (i + 1));
+                threads[i].start();
+            }
+            // The calling thread works too
+            download.run();
+            for (int i = 0; i < threads.length; i++) {
+                join(threads[i]);
+            }
+            download.rethrow();
+            ok = true;
+        } finally {
+            raf.close();
+            if (!ok) {
+                dest.delete();
+            }
+        }
+        return length;
+    }
+
+    private static void checkResponse(final HttpURLConnection conn, final int expected)
+            throws IOException {
+        final int code = conn.getResponseCode();
+        if (code != expected) {
+            throw new IOException("Unexpected HTTP response " + code + " for "
+                    + conn.getURL() + " (expected " + expected + ")");
+        }
+    }
+
+    /**
+     * Returns the value for an <code>If-Range</code> header. A strong entity
+     * tag is preferred, weak ones cannot be used for ranges.
+     * 
+     * @param conn
+     *            Connection with the response headers.
+     * 
+     * @return Entity tag, last modification date or <code>null</code>.
+     */
+    private static String getValidator(final HttpURLConnection conn) {
+        final String etag = conn.getHeaderField("ETag");
+        if ((etag != null) && !etag.startsWith("W/")) {
+            return etag;
+        }
+        return conn.getHeaderField("Last-Modified");
+    }
+
+    private static long parseLength(final String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (final NumberFormatException ex) {
+            return -1;
+        }
+    }
+
+    private static void join(final Thread thread) {
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException ex) {
+                ignore();
+            }
+        }
+    }
+
+    private boolean isCanceled() {
+        if (cancelable == null) {
+            return false;
+        }
+        return cancelable.isCanceled();
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+    /**
+     * State shared by all connections of one download.
+     */
+    private final class Download implements Runnable {
+
+        private static final int HTTP_PARTIAL = 206;
+
+        private final URL url;
+
+        private final FileChannel channel;
+
+        private final long length;
+
+        private final long segmentSize;
+
+        private final int segmentCount;
+
+        private final String validator;
+
+        private int nextSegment = 0;
+
+        private long total = 0;
+
+        private Throwable error = null;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param url
+         *            Resource to download.
+         * @param channel
+         *            Preallocated target file.
+         * @param length
+         *            Length of the resource.
+         * @param validator
+         *            Value for the <code>If-Range</code> header - Can be
+         *            <code>null</code>.
+         */
+        public Download(final URL url, final FileChannel channel, final long length,
+                final String validator) {
+            super();
+            this.url = url;
+            this.channel = channel;
+            this.length = length;
+            this.validator = validator;
+            // More segments than connections balance slow connections
+            final long size = length / (connectionCount * 4L);
+            this.segmentSize = Math.max(minSegmentSize, size);
+            this.segmentCount = (int) ((length + segmentSize - 1) / segmentSize);
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final void run() {
+            final byte[] buf = new byte[BUFFER_SIZE];
+            int segment;
+            while ((segment = nextSegment()) >= 0) {
+                final long start = segment * segmentSize;
+                final long end = Math.min(start + segmentSize, length) - 1;
+                try {
+                    fetch(start, end, buf);
+                } catch (final Throwable t) {
+                    failed(t);
+                }
+            }
+        }
+
+        private void fetch(final long start, final long end, final byte[] buf)
+                throws IOException {
+            // Position is updated while reading so a retry continues there
+            final long[] pos = new long[] {start};
+            int retries = 0;
+            while (pos[0] <= end) {
+                try {
+                    fetchRange(pos, end, buf);
+                } catch (final FileCopyCanceledException ex) {
+                    throw ex;
+                } catch (final ResourceChangedException ex) {
+                    // Retrying would not help
+                    throw ex;
+                } catch (final IOException ex) {
+                    if (isCanceled()) {
+                        throw new FileCopyCanceledException("Download canceled");
+                    }
+                    retries++;
+                    if (retries > maxRetries) {
+                        throw ex;
+                    }
+                }
+            }
+        }
+
+        private void fetchRange(final long[] pos, final long end, final byte[] buf)
+                throws IOException {
+            final HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+            try {
+                conn.setRequestProperty("Range", "bytes=" + pos[0] + "-" + end);
+                if (validator != null) {
+                    conn.setRequestProperty("If-Range", validator);
+                }
+                if (conn.getResponseCode() == HttpURLConnection.HTTP_OK) {
+                    // Range ignored because the If-Range validator did not match
+                    throw new ResourceChangedException("Resource changed during download: "
+                            + url);
+                }
+                checkResponse(conn, HTTP_PARTIAL);
+                checkContentRange(conn.getHeaderField("Content-Range"), pos[0], end);
+                final InputStream in = conn.getInputStream();
+                final FileCopyProgressChannel source = new FileCopyProgressChannel(null,
+                        Channels.newChannel(in), cancelable);
+                final ByteBuffer bb = ByteBuffer.wrap(buf);
+                try {
+                    int count;
+                    while ((pos[0] <= end) && ((count = source.read(bb)) >= 0)) {
+                        bb.flip();
+                        if (count > end - pos[0] + 1) {
+                            // Server sent more than requested
+                            bb.limit((int) (end - pos[0] + 1));
+                        }
+                        final int written = bb.remaining();
+                        while (bb.hasRemaining()) {
+                            channel.write(bb, pos[0] + bb.position());
+                        }
+                        pos[0] = pos[0] + written;
+                        bb.clear();
+                        received(written);
+                    }
+                } finally {
+                    source.close();
+                }
+                if (pos[0] <= end) {
+                    throw new IOException("Connection closed before end of range: " + pos[0]
+                            + " < " + end);
+                }
+            } finally {
+                conn.disconnect();
+            }
+        }
+
+        /**
+         * Verifies that a partial response starts at the requested position
+         * and belongs to a resource of the expected length. A shorter range
+         * is accepted, the remaining bytes are requested again.
+         * 
+         * @param value
+         *            Value of the <code>Content-Range</code> header.
+         * @param start
+         *            Requested first byte.
+         * @param end
+         *            Requested last byte.
+         * 
+         * @throws ResourceChangedException
+         *             The range does not match the request.
+         */
+        private void checkContentRange(final String value, final long start,
+                final long end) throws ResourceChangedException {
+            // Example: "bytes 0-499/1234"
+            final String prefix = "bytes ";
+            final int dash = (value == null) ? -1 : value.indexOf('-', prefix.length());
+            final int slash = (value == null) ? -1 : value.indexOf('/', dash + 1);
+            if ((dash < 0) || (slash < 0)
+                    || !value.regionMatches(true, 0, prefix, 0, prefix.length())) {
+                throw new ResourceChangedException("Invalid Content-Range for " + url
+                        + ": " + value);
+            }
+            final long first = parseLength(value.substring(prefix.length(), dash));
+            final long last = parseLength(value.substring(dash + 1, slash));
+            final String total = value.substring(slash + 1).trim();
+            if ((first != start) || (last < first) || (last > end)
+                    || (!"*".equals(total) && (parseLength(total) != length))) {
+                throw new ResourceChangedException("Unexpected Content-Range for " + url
+                        + " (requested " + start + "-" + end + "/" + length + "): "
+                        + value);
+            }
+        }
+
+        private synchronized int nextSegment() {
+            if ((error != null) || (nextSegment >= segmentCount) || isCanceled()) {
+                return -1;
+            }
+            final int segment = nextSegment;
+            nextSegment++;
+            return segment;
+        }
+
+        private synchronized void received(final int n) {
+            total = total + n;
+            if (listener != null) {
+                listener.updateByte(FileCopyProgressChannel.toInt(total));
+            }
+        }
+
+        private synchronized void failed(final Throwable t) {
+            if (error == null) {
+                error = t;
+            }
+        }
+
+        /**
+         * Throws the first error of any connection or a cancel exception.
+         * 
+         * @throws IOException
+         *             Error downloading a segment or canceled.
+         */
+        public synchronized void rethrow() throws IOException {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            if (isCanceled()) {
+                throw new FileCopyCanceledException("Download canceled");
+            }
+        }
+
+    }
+
+    /**
+     * The resource on the server does not match the one that was started.
+     */
+    private static final class ResourceChangedException extends IOException {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * Constructor with message.
+         * 
+         * @param message
+         *            Error message.
+         */
+        public ResourceChangedException(final String message) {
+            super(message);
+        }
+
+    }
+
+}
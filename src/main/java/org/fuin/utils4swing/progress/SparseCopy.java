@@ -0,0 +1,179 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import org.fuin.utils4j.Cancelable;
+
+/**
+ * Copies a file and recreates runs of zeros as holes in the destination. The
+ * JDK does not expose the hole information of the file system
+ * (<code>SEEK_HOLE</code>/<code>SEEK_DATA</code>), so the source is read
+ * completely and every block that contains only zeros is skipped. Blocks with
+ * data are written with positional writes and the length of the destination
+ * is set at the end, so all skipped blocks become holes on file systems that
+ * support sparse files. The progress is reported in logical bytes.
+ */
+final class SparseCopy {
+
+    /** Granularity of the zero detection - The usual file system block size. */
+    static final int BLOCK_SIZE = 4 * 1024;
+
+    private final FileCopyProgressListener listener;
+
+    private final Cancelable cancelable;
+
+    private final int bufferSize;
+
+    /**
+     * Constructor with all data.
+     * 
+     * @param listener
+     *            Listener to inform about progress - Can be <code>null</code>.
+     * @param cancelable
+     *            Cancel tracker - Can be <code>null</code>.
+     * @param bufferSize
+     *            Size of the read buffer - Rounded up to a multiple of the
+     *            block size.
+     */
+    public SparseCopy(final FileCopyProgressListener listener, final Cancelable cancelable,
+            final int bufferSize) {
+        super();
+        this.listener = listener;
+        this.cancelable = cancelable;
+        this.bufferSize = ((bufferSize + BLOCK_SIZE - 1) / BLOCK_SIZE) * BLOCK_SIZE;
+    }
+
+    /**
+     * Copies the source into the destination.
+     * 
+     * @param src
+     *            Source file.
+     * @param dest
+     *            Destination file - Will be overwritten if it already exists.
+     * @param md
+     *            Digest to update with the complete source content - Can be
+     *            <code>null</code>.
+     * 
+     * @return Number of bytes that were actually written.
+     * 
+     * @throws IOException
+     *             Error copying - The destination file has been removed.
+     */
+    public long copy(final File src, final File dest, final MessageDigest md)
+            throws IOException {
+        final byte[] buf = new byte[bufferSize];
+        final ByteBuffer longs = ByteBuffer.wrap(buf);
+        long written = 0;
+        boolean ok = false;
+        final FileInputStream fis = new FileInputStream(src);
+        final FileCopyProgressChannel in = new FileCopyProgressChannel(listener, fis
+                .getChannel(), cancelable);
+        try {
+            final RandomAccessFile raf = new RandomAccessFile(dest, "rw");
+            try {
+                // Existing data would not be replaced by holes
+                raf.setLength(0);
+                final FileChannel out = raf.getChannel();
+                long pos = 0;
+                boolean eof = false;
+                while (!eof) {
+                    final ByteBuffer bb = ByteBuffer.wrap(buf);
+                    while (bb.hasRemaining()) {
+                        if (in.read(bb) < 0) {
+                            eof = true;
+                            break;
+                        }
+                    }
+                    final int filled = bb.position();
+                    if (md != null) {
+                        md.update(buf, 0, filled);
+                    }
+                    written = written + writeData(longs, filled, out, pos);
+                    pos = pos + filled;
+                }
+                raf.setLength(pos);
+                ok = true;
+            } finally {
+                raf.close();
+            }
+        } finally {
+            in.close();
+            if (!ok) {
+                dest.delete();
+            }
+        }
+        return written;
+    }
+
+    private static long writeData(final ByteBuffer buf, final int filled,
+            final FileChannel out, final long pos) throws IOException {
+        long written = 0;
+        int runStart = -1;
+        for (int off = 0; off < filled; off = off + BLOCK_SIZE) {
+            final int len = Math.min(BLOCK_SIZE, filled - off);
+            if (isZero(buf, off, len)) {
+                if (runStart >= 0) {
+                    written = written + write(buf, runStart, off, out, pos);
+                    runStart = -1;
+                }
+            } else if (runStart < 0) {
+                runStart = off;
+            }
+        }
+        if (runStart >= 0) {
+            written = written + write(buf, runStart, filled, out, pos);
+        }
+        return written;
+    }
+
+    private static int write(final ByteBuffer buf, final int start, final int end,
+            final FileChannel out, final long pos) throws IOException {
+        final ByteBuffer data = buf.duplicate();
+        data.limit(end);
+        data.position(start);
+        while (data.hasRemaining()) {
+            out.write(data, pos + data.position());
+        }
+        return end - start;
+    }
+
+    private static boolean isZero(final ByteBuffer buf, final int off, final int len) {
+        final int end = off + len;
+        int i = off;
+        for (; i + 8 <= end; i = i + 8) {
+            if (buf.getLong(i) != 0) {
+                return false;
+            }
+        }
+        for (; i < end; i++) {
+            if (buf.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
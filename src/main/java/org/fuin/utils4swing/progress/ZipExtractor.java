@@ -0,0 +1,376 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.fuin.utils4j.Cancelable;
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Extracts a ZIP or JAR archive and reports the progress to a
+ * <code>FileCopyProgressListener</code>: One <code>updateFile</code> per
+ * entry and the bytes based on the uncompressed size. The entries are inflated
+ * in parallel by several threads reading from the same random access
+ * <code>ZipFile</code>. Calls to the listener are serialized, so it does not
+ * have to be thread safe. The bytes are only reported for the entry that was
+ * most recently announced with <code>updateFile</code>.
+ */
+public final class ZipExtractor {
+
+    private final FileCopyProgressListener listener;
+
+    private final Cancelable cancelable;
+
+    private int threadCount = Runtime.getRuntime().availableProcessors();
+
+    private int bufferSize = FileCopier.DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Constructor with listener and cancelable.
+     * 
+     * @param listener
+     *            Listener to inform about progress - Can be <code>null</code>.
+     * @param cancelable
+     *            Cancel tracker - Can be <code>null</code> if the extraction
+     *            cannot be canceled.
+     */
+    public ZipExtractor(final FileCopyProgressListener listener, final Cancelable cancelable) {
+        super();
+        this.listener = listener;
+        this.cancelable = cancelable;
+    }
+
+    /**
+     * Returns the maximum number of threads inflating entries in parallel.
+     * 
+     * @return Number of threads - Defaults to the number of processors.
+     */
+    public final int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the maximum number of threads inflating entries in parallel.
+     * 
+     * @param threadCount
+     *            Number of threads - Must be greater than zero.
+     */
+    public final void setThreadCount(final int threadCount) {
+        if (threadCount <= 0) {
+            throw new IllegalArgumentException("The argument 'threadCount' must be > 0: "
+                    + threadCount);
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Returns the size of the buffer used by every thread.
+     * 
+     * @return Buffer size in bytes.
+     */
+    public final int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * Sets the size of the buffer used by every thread.
+     * 
+     * @param bufferSize
+     *            Buffer size in bytes - Must be greater than zero.
+     */
+    public final void setBufferSize(final int bufferSize) {
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The argument 'bufferSize' must be > 0: "
+                    + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns the number of file entries in an archive. Useful as "max file"
+     * value for a <code>FileCopyProgressMonitor</code>.
+     * 
+     * @param zipFile
+     *            Archive to inspect.
+     * 
+     * @return Number of entries that are not directories.
+     * 
+     * @throws IOException
+     *             Error reading the archive.
+     */
+    public static int countFiles(final File zipFile) throws IOException {
+        Utils4J.checkNotNull("zipFile", zipFile);
+        final ZipFile zip = new ZipFile(zipFile);
+        try {
+            int count = 0;
+            final Enumeration en = zip.entries();
+            while (en.hasMoreElements()) {
+                if (!((ZipEntry) en.nextElement()).isDirectory()) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            zip.close();
+        }
+    }
+
+    /**
+     * Extracts all entries of an archive into a directory. Existing files are
+     * overwritten.
+     * 
+     * @param zipFile
+     *            Archive to extract.
+     * @param destDir
+     *            Target directory - Will be created if it does not exist.
+     * 
+     * @return Number of extracted files.
+     * 
+     * @throws FileCopyCanceledException
+     *             The extraction was canceled - Partially written files have
+     *             been removed.
+     * @throws IOException
+     *             Error extracting the archive.
+     */
+    public final int extract(final File zipFile, final File destDir) throws IOException {
+        Utils4J.checkNotNull("zipFile", zipFile);
+        Utils4J.checkNotNull("destDir", destDir);
+
+        final ZipFile zip = new ZipFile(zipFile);
+        try {
+            final String destPath = destDir.getCanonicalPath() + File.separator;
+            final List entries = new ArrayList();
+            final Enumeration en = zip.entries();
+            while (en.hasMoreElements()) {
+                final ZipEntry entry = (ZipEntry) en.nextElement();
+                final File file = new File(destDir, entry.getName());
+                if (!(file.getCanonicalPath() + File.separator).startsWith(destPath)) {
+                    throw new IOException("Entry is outside of the target directory: "
+                            + entry.getName());
+                }
+                // Create the directories before any thread starts writing
+                if (entry.isDirectory()) {
+                    mkdirs(file);
+                } else {
+                    mkdirs(file.getParentFile());
+                    entries.add(entry);
+                }
+            }
+            // Largest entries first keeps all threads busy until the end
+            Collections.sort(entries, new Comparator() {
+                public int compare(final Object o1, final Object o2) {
+                    final long s1 = ((ZipEntry) o1).getSize();
+                    final long s2 = ((ZipEntry) o2).getSize();
+                    return (s1 < s2) ? 1 : ((s1 == s2) ? 0 : -1);
+                }
+            });
+
+            final Extraction extraction = new Extraction(zip, destDir, entries);
+            final int count = Math.min(threadCount, entries.size());
+            final Thread[] threads = new Thread[Math.max(0, count - 1)];
+            for (int i = 0; i < threads.length; i++) {
+                threads[i] = new Thread(extraction, "ZipExtractor-" + (i + 1));
+                threads[i].start();
+            }
+            // The calling thread works too
+            extraction.run();
+            for (int i = 0; i < threads.length; i++) {
+                join(threads[i]);
+            }
+            extraction.rethrow();
+            return entries.size();
+        } finally {
+            zip.close();
+        }
+    }
+
+    private static void mkdirs(final File dir) throws IOException {
+        if ((dir != null) && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create directory: " + dir);
+        }
+    }
+
+    private static void join(final Thread thread) {
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (final InterruptedException ex) {
+                ignore();
+            }
+        }
+    }
+
+    private boolean isCanceled() {
+        if (cancelable == null) {
+            return false;
+        }
+        return cancelable.isCanceled();
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+    /**
+     * State shared by all threads of one extraction.
+     */
+    private final class Extraction implements Runnable {
+
+        private final ZipFile zip;
+
+        private final File destDir;
+
+        private final List entries;
+
+        private int next = 0;
+
+        private int fileNo = 0;
+
+        private Object current = null;
+
+        private Throwable error = null;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param zip
+         *            Archive to read from.
+         * @param destDir
+         *            Target directory.
+         * @param entries
+         *            File entries to extract.
+         */
+        public Extraction(final ZipFile zip, final File destDir, final List entries) {
+            super();
+            this.zip = zip;
+            this.destDir = destDir;
+            this.entries = entries;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final void run() {
+            final byte[] buf = new byte[bufferSize];
+            ZipEntry entry;
+            while ((entry = nextEntry()) != null) {
+                final File file = new File(destDir, entry.getName());
+                try {
+                    inflate(entry, file, buf);
+                } catch (final Throwable t) {
+                    file.delete();
+                    failed(t);
+                }
+            }
+        }
+
+        private void inflate(final ZipEntry entry, final File file, final byte[] buf)
+                throws IOException {
+            final Object token = started(entry, file);
+            final InputStream in = zip.getInputStream(entry);
+            try {
+                final FileOutputStream out = new FileOutputStream(file);
+                try {
+                    // Zip64 entries can be larger than 2 GB
+                    long total = 0;
+                    int count;
+                    while ((count = in.read(buf)) > 0) {
+                        if (isCanceled()) {
+                            throw new FileCopyCanceledException("Extraction canceled");
+                        }
+                        out.write(buf, 0, count);
+                        total = total + count;
+                        progress(token, total);
+                    }
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            if (entry.getTime() > 0) {
+                file.setLastModified(entry.getTime());
+            }
+        }
+
+        private synchronized ZipEntry nextEntry() {
+            if ((error != null) || (next >= entries.size()) || isCanceled()) {
+                return null;
+            }
+            final ZipEntry entry = (ZipEntry) entries.get(next);
+            next++;
+            return entry;
+        }
+
+        private synchronized Object started(final ZipEntry entry, final File file) {
+            fileNo++;
+            current = new Object();
+            if (listener != null) {
+                listener.updateFile(entry.getName(), file.getPath(), fileNo,
+                        FileCopyProgressChannel.toInt(entry.getSize()));
+            }
+            return current;
+        }
+
+        private synchronized void progress(final Object token, final long n) {
+            if ((listener != null) && (token == current)) {
+                listener.updateByte(FileCopyProgressChannel.toInt(n));
+            }
+        }
+
+        private synchronized void failed(final Throwable t) {
+            if (error == null) {
+                error = t;
+            }
+        }
+
+        /**
+         * Throws the first error of any thread or a cancel exception.
+         * 
+         * @throws IOException
+         *             Error extracting an entry or canceled.
+         */
+        public synchronized void rethrow() throws IOException {
+            if (error instanceof IOException) {
+                throw (IOException) error;
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            if (isCanceled()) {
+                throw new FileCopyCanceledException("Extraction canceled");
+            }
+        }
+
+    }
+
+}
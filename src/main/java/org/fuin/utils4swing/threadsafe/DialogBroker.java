@@ -0,0 +1,284 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.threadsafe;
+
+import java.awt.Component;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.Icon;
+
+/**
+ * Shows dialogs requested by many threads one after another. A request that
+ * equals a dialog that is currently shown or still waiting (same kind, parent,
+ * message, title, types and options) does not create a new dialog: All callers
+ * get the same {@link DialogFuture} and a single answer of the user releases
+ * all of them. Example: Many copy workers fail with the same network error at
+ * the same time, but the user sees only one message and clicks only once.<br>
+ * <br>
+ * The next dialog is shown after the previous one was closed. Messages are
+ * compared with <code>equals(Object)</code>, so use the same text for the same
+ * problem.
+ */
+public final class DialogBroker {
+
+    private final LinkedList queue = new LinkedList();
+
+    private final Map active = new HashMap();
+
+    private boolean showing = false;
+
+    private int requestCount = 0;
+
+    private int dialogCount = 0;
+
+    /**
+     * Default constructor.
+     */
+    public DialogBroker() {
+        super();
+    }
+
+    /**
+     * Requests a message dialog.
+     * 
+     * @param parentComponent
+     *            Parent of the dialog - Can be <code>null</code>.
+     * @param message
+     *            Message to display.
+     * @param title
+     *            Title of the dialog.
+     * @param messageType
+     *            Type of the message like
+     *            <code>JOptionPane.ERROR_MESSAGE</code>.
+     * 
+     * @return Future that is done when the user closed the dialog.
+     */
+    public final DialogFuture showMessageDialog(final Component parentComponent,
+            final Object message, final String title, final int messageType) {
+        return request(key("message", parentComponent, message, title, 0, messageType,
+                null), new Request() {
+            public void show(final DialogCallback callback) {
+                ThreadSafeJOptionPane.showMessageDialogAsync(parentComponent, message, title,
+                        messageType, callback);
+            }
+        });
+    }
+
+    /**
+     * Requests a confirm dialog.
+     * 
+     * @param parentComponent
+     *            Parent of the dialog - Can be <code>null</code>.
+     * @param message
+     *            Message to display.
+     * @param title
+     *            Title of the dialog.
+     * @param optionType
+     *            Options like <code>JOptionPane.YES_NO_OPTION</code>.
+     * @param messageType
+     *            Type of the message like
+     *            <code>JOptionPane.QUESTION_MESSAGE</code>.
+     * 
+     * @return Future with an <code>Integer</code> indicating the option
+     *         selected by the user.
+     */
+    public final DialogFuture showConfirmDialog(final Component parentComponent,
+            final Object message, final String title, final int optionType,
+            final int messageType) {
+        return request(key("confirm", parentComponent, message, title, optionType,
+                messageType, null), new Request() {
+            public void show(final DialogCallback callback) {
+                ThreadSafeJOptionPane.showConfirmDialogAsync(parentComponent, message, title,
+                        optionType, messageType, callback);
+            }
+        });
+    }
+
+    /**
+     * Requests an option dialog.
+     * 
+     * @param parentComponent
+     *            Parent of the dialog - Can be <code>null</code>.
+     * @param message
+     *            Message to display.
+     * @param title
+     *            Title of the dialog.
+     * @param optionType
+     *            Options like <code>JOptionPane.YES_NO_OPTION</code>.
+     * @param messageType
+     *            Type of the message like
+     *            <code>JOptionPane.QUESTION_MESSAGE</code>.
+     * @param icon
+     *            Icon to display - Can be <code>null</code>.
+     * @param options
+     *            Possible choices - Can be <code>null</code>.
+     * @param initialValue
+     *            Default selection - Can be <code>null</code>.
+     * 
+     * @return Future with an <code>Integer</code> indicating the option
+     *         chosen by the user.
+     */
+    // CHECKSTYLE:OFF Maximum parameters disabled
+    public final DialogFuture showOptionDialog(final Component parentComponent,
+            final Object message, final String title, final int optionType,
+            final int messageType, final Icon icon, final Object[] options,
+            final Object initialValue) {
+        final List extra = new ArrayList();
+        extra.add(icon);
+        extra.add(initialValue);
+        if (options != null) {
+            extra.add(Arrays.asList(options));
+        }
+        return request(key("option", parentComponent, message, title, optionType,
+                messageType, extra), new Request() {
+            public void show(final DialogCallback callback) {
+                ThreadSafeJOptionPane.showOptionDialogAsync(parentComponent, message, title,
+                        optionType, messageType, icon, options, initialValue, callback);
+            }
+        });
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Returns the number of dialogs that are shown or waiting.
+     * 
+     * @return Number of dialogs.
+     */
+    public final synchronized int getPendingCount() {
+        return active.size();
+    }
+
+    /**
+     * Returns the number of requests received so far.
+     * 
+     * @return Number of calls to the <code>show*</code> methods.
+     */
+    public final synchronized int getRequestCount() {
+        return requestCount;
+    }
+
+    /**
+     * Returns the number of dialogs created so far. The difference to
+     * {@link #getRequestCount()} is the number of merged requests.
+     * 
+     * @return Number of dialogs.
+     */
+    public final synchronized int getDialogCount() {
+        return dialogCount;
+    }
+
+    private static Object key(final String kind, final Component parentComponent,
+            final Object message, final String title, final int optionType,
+            final int messageType, final List extra) {
+        final List key = new ArrayList();
+        key.add(kind);
+        key.add(parentComponent);
+        key.add(message);
+        key.add(title);
+        key.add(new Integer(optionType));
+        key.add(new Integer(messageType));
+        key.add(extra);
+        return key;
+    }
+
+    private DialogFuture request(final Object key, final Request request) {
+        synchronized (this) {
+            requestCount++;
+            final DialogFuture existing = (DialogFuture) active.get(key);
+            if (existing != null) {
+                return existing;
+            }
+            dialogCount++;
+            request.key = key;
+            active.put(key, request.future);
+            queue.add(request);
+            if (showing) {
+                return request.future;
+            }
+            showing = true;
+        }
+        showNext();
+        return request.future;
+    }
+
+    private void showNext() {
+        final Request next;
+        synchronized (this) {
+            if (queue.isEmpty()) {
+                showing = false;
+                return;
+            }
+            next = (Request) queue.removeFirst();
+        }
+        try {
+            next.show(new DialogCallback() {
+                public void dialogClosed(final DialogFuture future) {
+                    closed(next, future);
+                }
+            });
+        } catch (final RuntimeException ex) {
+            next.future.fail(ex);
+            closed(next, null);
+        }
+    }
+
+    private void closed(final Request request, final DialogFuture dialog) {
+        synchronized (this) {
+            // New requests from now on need a new dialog
+            active.remove(request.key);
+        }
+        if (dialog != null) {
+            try {
+                request.future.complete(dialog.get());
+            } catch (final InterruptedException ex) {
+                // Cannot happen because the dialog is done
+                request.future.fail(ex);
+            } catch (final RuntimeException ex) {
+                request.future.fail(ex);
+            } catch (final Error err) {
+                request.future.fail(err);
+            }
+        }
+        showNext();
+    }
+
+    /**
+     * A dialog waiting to be shown.
+     */
+    private abstract static class Request {
+
+        private final DialogFuture future = new DialogFuture();
+
+        private Object key;
+
+        /**
+         * Shows the dialog asynchronously.
+         * 
+         * @param callback
+         *            Informed when the dialog was closed.
+         */
+        public abstract void show(DialogCallback callback);
+
+    }
+
+}
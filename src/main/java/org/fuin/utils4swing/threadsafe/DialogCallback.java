@@ -0,0 +1,35 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.threadsafe;
+
+/**
+ * Gets informed when a dialog started asynchronously was closed.
+ */
+public interface DialogCallback {
+
+    /**
+     * The dialog was closed or failed. This method is called in the thread
+     * that completed the future - Usually the EDT. Calling
+     * <code>future.get()</code> will not block.
+     * 
+     * @param future
+     *            Future of the dialog that is done now.
+     */
+    public void dialogClosed(DialogFuture future);
+
+}
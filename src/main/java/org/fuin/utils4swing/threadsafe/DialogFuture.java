@@ -0,0 +1,185 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.threadsafe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Result of a dialog that was started without waiting for the user. The
+ * result can be fetched blocking with {@link #get()}, with a time limit using
+ * {@link #waitFor(long)} or without any waiting thread by adding a
+ * {@link DialogCallback}.
+ */
+public final class DialogFuture {
+
+    private boolean done = false;
+
+    private Object result = null;
+
+    private Throwable error = null;
+
+    private List callbacks = null;
+
+    /**
+     * Default constructor.
+     */
+    public DialogFuture() {
+        super();
+    }
+
+    /**
+     * Returns if the dialog was closed.
+     * 
+     * @return If the result is available <code>true</code> else
+     *         <code>false</code>.
+     */
+    public final synchronized boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Waits at most the given time for the dialog to be closed.
+     * 
+     * @param timeoutMillis
+     *            Maximum time to wait in milliseconds - Zero returns
+     *            immediately.
+     * 
+     * @return If the result is available <code>true</code> else
+     *         <code>false</code>.
+     * 
+     * @throws InterruptedException
+     *             The thread was interrupted while waiting.
+     */
+    public final synchronized boolean waitFor(final long timeoutMillis)
+            throws InterruptedException {
+        final long end = System.currentTimeMillis() + timeoutMillis;
+        long wait = timeoutMillis;
+        while (!done && (wait > 0)) {
+            wait(wait);
+            wait = end - System.currentTimeMillis();
+        }
+        return done;
+    }
+
+    /**
+     * Waits until the dialog is closed and returns the result.
+     * 
+     * @return Result of the dialog - An <code>Integer</code> for dialogs that
+     *         return an <code>int</code> and <code>null</code> for message
+     *         dialogs.
+     * 
+     * @throws InterruptedException
+     *             The thread was interrupted while waiting.
+     */
+    public final synchronized Object get() throws InterruptedException {
+        while (!done) {
+            wait();
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error instanceof Error) {
+            throw (Error) error;
+        }
+        if (error != null) {
+            throw new RuntimeException(error);
+        }
+        return result;
+    }
+
+    /**
+     * Waits until the dialog is closed and returns the result of a dialog that
+     * returns an <code>int</code>.
+     * 
+     * @return Selected option.
+     * 
+     * @throws InterruptedException
+     *             The thread was interrupted while waiting.
+     */
+    public final int getInt() throws InterruptedException {
+        return ((Integer) get()).intValue();
+    }
+
+    /**
+     * Adds a callback that is informed when the dialog was closed. If the
+     * dialog is already closed the callback is called immediately in the
+     * current thread.
+     * 
+     * @param callback
+     *            Callback to add.
+     */
+    public final void addCallback(final DialogCallback callback) {
+        if (callback == null) {
+            throw new IllegalArgumentException("The argument 'callback' cannot be null!");
+        }
+        synchronized (this) {
+            if (!done) {
+                if (callbacks == null) {
+                    callbacks = new ArrayList();
+                }
+                callbacks.add(callback);
+                return;
+            }
+        }
+        callback.dialogClosed(this);
+    }
+
+    /**
+     * Sets the result and informs all waiting threads and callbacks. Has no
+     * effect if the future is already done.
+     * 
+     * @param result
+     *            Result of the dialog.
+     */
+    final void complete(final Object result) {
+        finish(result, null);
+    }
+
+    /**
+     * Sets an error and informs all waiting threads and callbacks. Has no
+     * effect if the future is already done.
+     * 
+     * @param error
+     *            Exception thrown while showing the dialog.
+     */
+    final void fail(final Throwable error) {
+        finish(null, error);
+    }
+
+    private void finish(final Object result, final Throwable error) {
+        final List list;
+        synchronized (this) {
+            if (done) {
+                return;
+            }
+            this.result = result;
+            this.error = error;
+            this.done = true;
+            list = callbacks;
+            callbacks = null;
+            notifyAll();
+        }
+        if (list != null) {
+            for (int i = 0; i < list.size(); i++) {
+                ((DialogCallback) list.get(i)).dialogClosed(this);
+            }
+        }
+    }
+
+}
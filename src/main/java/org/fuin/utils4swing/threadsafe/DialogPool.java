@@ -0,0 +1,307 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.threadsafe;
+
+import java.awt.Component;
+import java.awt.Window;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import javax.swing.Icon;
+import javax.swing.JDialog;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.UIManager;
+
+/**
+ * Replacement for the static <code>JOptionPane.show*Dialog</code> methods that
+ * reuses the dialogs if pooling is enabled. There is one prepared
+ * <code>JOptionPane</code> and <code>JDialog</code> per parent window,
+ * message type and option type. Only message, icon, options, initial value
+ * and title are changed before a pooled dialog is shown again, so the window
+ * and its native resources are not created again. The pooled dialogs of a
+ * window are disposed when the window is closed (disposed). If pooling is
+ * disabled the calls are simply delegated to <code>JOptionPane</code>. All
+ * methods must be called in the EDT.
+ */
+final class DialogPool {
+
+    /**
+     * Window - Map of Integer key to Entry. The dialogs reference their owner,
+     * so the weak keys only help for windows that are never disposed - The
+     * entries are removed by a listener when the window is closed.
+     */
+    private static final Map WINDOWS = new WeakHashMap();
+
+    private static volatile boolean enabled = false;
+
+    /**
+     * Private constructor.
+     */
+    private DialogPool() {
+        throw new UnsupportedOperationException(
+                "This utility class is not intended to be instanciated!");
+    }
+
+    /**
+     * Returns if the pooling is enabled.
+     * 
+     * @return If dialogs are reused <code>true</code> else <code>false</code>.
+     */
+    static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Enables or disables the pooling.
+     * 
+     * @param enabled
+     *            If dialogs should be reused <code>true</code> else
+     *            <code>false</code>.
+     */
+    static void setEnabled(final boolean enabled) {
+        DialogPool.enabled = enabled;
+    }
+
+    /**
+     * Disposes all pooled dialogs that are not visible.
+     */
+    static void clear() {
+        final Iterator windows = WINDOWS.values().iterator();
+        while (windows.hasNext()) {
+            final Iterator entries = ((Map) windows.next()).values().iterator();
+            while (entries.hasNext()) {
+                final Entry entry = (Entry) entries.next();
+                if (!entry.inUse) {
+                    entry.dialog.dispose();
+                    entries.remove();
+                }
+            }
+        }
+    }
+
+    static int showConfirmDialog(final Component parentComponent, final Object message) {
+        return showConfirmDialog(parentComponent, message, UIManager
+                .getString("OptionPane.titleText"), JOptionPane.YES_NO_CANCEL_OPTION);
+    }
+
+    static int showConfirmDialog(final Component parentComponent, final Object message,
+            final String title, final int optionType) {
+        return showConfirmDialog(parentComponent, message, title, optionType,
+                JOptionPane.QUESTION_MESSAGE);
+    }
+
+    static int showConfirmDialog(final Component parentComponent, final Object message,
+            final String title, final int optionType, final int messageType) {
+        return showConfirmDialog(parentComponent, message, title, optionType, messageType,
+                null);
+    }
+
+    static int showConfirmDialog(final Component parentComponent, final Object message,
+            final String title, final int optionType, final int messageType, final Icon icon) {
+        if (!enabled) {
+            return JOptionPane.showConfirmDialog(parentComponent, message, title, optionType,
+                    messageType, icon);
+        }
+        return selectedIndex(null, show(parentComponent, message, title, optionType,
+                messageType, icon, null, null));
+    }
+
+    static void showMessageDialog(final Component parentComponent, final Object message) {
+        showMessageDialog(parentComponent, message, UIManager
+                .getString("OptionPane.messageDialogTitle"), JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    static void showMessageDialog(final Component parentComponent, final Object message,
+            final String title, final int messageType) {
+        showMessageDialog(parentComponent, message, title, messageType, null);
+    }
+
+    static void showMessageDialog(final Component parentComponent, final Object message,
+            final String title, final int messageType, final Icon icon) {
+        if (!enabled) {
+            JOptionPane.showMessageDialog(parentComponent, message, title, messageType, icon);
+            return;
+        }
+        show(parentComponent, message, title, JOptionPane.DEFAULT_OPTION, messageType, icon,
+                null, null);
+    }
+
+    // CHECKSTYLE:OFF Maximum parameters disabled
+    static int showOptionDialog(final Component parentComponent, final Object message,
+            final String title, final int optionType, final int messageType, final Icon icon,
+            final Object[] options, final Object initialValue) {
+        if (!enabled) {
+            return JOptionPane.showOptionDialog(parentComponent, message, title, optionType,
+                    messageType, icon, options, initialValue);
+        }
+        return selectedIndex(options, show(parentComponent, message, title, optionType,
+                messageType, icon, options, initialValue));
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Converts the value of an option pane into the result of
+     * <code>JOptionPane.showOptionDialog(..)</code>.
+     * 
+     * @param options
+     *            Options of the pane or <code>null</code>.
+     * @param selected
+     *            Value of the pane.
+     * 
+     * @return Selected option.
+     */
+    static int selectedIndex(final Object[] options, final Object selected) {
+        if (selected == null) {
+            return JOptionPane.CLOSED_OPTION;
+        }
+        if (options == null) {
+            if (selected instanceof Integer) {
+                return ((Integer) selected).intValue();
+            }
+            return JOptionPane.CLOSED_OPTION;
+        }
+        for (int i = 0; i < options.length; i++) {
+            if (options[i].equals(selected)) {
+                return i;
+            }
+        }
+        return JOptionPane.CLOSED_OPTION;
+    }
+
+    // CHECKSTYLE:OFF Maximum parameters disabled
+    private static Object show(final Component parentComponent, final Object message,
+            final String title, final int optionType, final int messageType, final Icon icon,
+            final Object[] options, final Object initialValue) {
+        final Window window = windowOf(parentComponent);
+        final Integer key = new Integer((messageType + 1) * 8 + (optionType + 1));
+        Map entries = (Map) WINDOWS.get(window);
+        if (entries == null) {
+            entries = new HashMap();
+            WINDOWS.put(window, entries);
+            window.addWindowListener(new WindowAdapter() {
+                public void windowClosed(final WindowEvent e) {
+                    window.removeWindowListener(this);
+                    release(window);
+                }
+            });
+        }
+        Entry entry = (Entry) entries.get(key);
+        final boolean pooled;
+        if (entry == null) {
+            entry = new Entry(parentComponent, message, title, optionType, messageType, icon,
+                    options, initialValue);
+            entries.put(key, entry);
+            pooled = true;
+        } else if (entry.inUse) {
+            // A dialog of the same kind is opened by the visible one
+            entry = new Entry(parentComponent, message, title, optionType, messageType, icon,
+                    options, initialValue);
+            pooled = false;
+        } else {
+            final JOptionPane pane = entry.pane;
+            pane.setMessage(message);
+            pane.setIcon(icon);
+            pane.setOptions(options);
+            pane.setInitialValue(initialValue);
+            entry.dialog.setTitle(title);
+            entry.dialog.pack();
+            entry.dialog.setLocationRelativeTo(parentComponent);
+            pooled = true;
+        }
+        entry.inUse = true;
+        try {
+            entry.pane.setValue(JOptionPane.UNINITIALIZED_VALUE);
+            entry.pane.selectInitialValue();
+            entry.dialog.setVisible(true);
+            return entry.pane.getValue();
+        } finally {
+            entry.inUse = false;
+            // The window may have been closed while the dialog was visible
+            if (!pooled || (WINDOWS.get(window) != entries)) {
+                entry.dialog.dispose();
+            }
+        }
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Disposes the pooled dialogs of a closed window and forgets the window.
+     * 
+     * @param window
+     *            Window that was closed.
+     */
+    private static void release(final Window window) {
+        final Map entries = (Map) WINDOWS.remove(window);
+        if (entries == null) {
+            return;
+        }
+        final Iterator it = entries.values().iterator();
+        while (it.hasNext()) {
+            final Entry entry = (Entry) it.next();
+            // A dialog still in use is disposed when it's closed
+            if (!entry.inUse) {
+                entry.dialog.dispose();
+            }
+        }
+    }
+
+    private static Window windowOf(final Component parentComponent) {
+        if (parentComponent == null) {
+            return JOptionPane.getRootFrame();
+        }
+        if (parentComponent instanceof Window) {
+            return (Window) parentComponent;
+        }
+        final Window window = SwingUtilities.getWindowAncestor(parentComponent);
+        if (window == null) {
+            return JOptionPane.getRootFrame();
+        }
+        return window;
+    }
+
+    /**
+     * Prepared option pane and its dialog.
+     */
+    private static final class Entry {
+
+        private final JOptionPane pane;
+
+        private final JDialog dialog;
+
+        private boolean inUse = false;
+
+        // CHECKSTYLE:OFF Maximum parameters disabled
+        public Entry(final Component parentComponent, final Object message,
+                final String title, final int optionType, final int messageType,
+                final Icon icon, final Object[] options, final Object initialValue) {
+            super();
+            pane = new JOptionPane(message, messageType, optionType, icon, options,
+                    initialValue);
+            pane.setComponentOrientation(windowOf(parentComponent).getComponentOrientation());
+            dialog = pane.createDialog(parentComponent, title);
+        }
+        // CHECKSTYLE:ON
+
+    }
+
+}
@@ -0,0 +1,216 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.threadsafe;
+
+import java.awt.EventQueue;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Executes tasks in the Event Dispatch Thread (EDT). A task is executed
+ * directly if the caller already is the EDT. Otherwise it is queued and all
+ * queued tasks are executed together in a single event of the
+ * <code>EventQueue</code>. A task can be queued with a key: If a task with the
+ * same key is still waiting it is replaced by the new one. This way a worker
+ * thread can update a component a million times while the EDT only sees the
+ * latest value once per event.<br>
+ * <br>
+ * Tasks are executed in the order of their last submission. Use
+ * {@link #key(Object, String)} to create keys for the properties of a
+ * component.
+ */
+public final class EdtExecutor {
+
+    private static final Object LOCK = new Object();
+
+    private static Map pending = new LinkedHashMap();
+
+    private static boolean scheduled = false;
+
+    private static final Runnable DRAIN = new Runnable() {
+        public void run() {
+            drain();
+        }
+    };
+
+    /**
+     * Private constructor.
+     */
+    private EdtExecutor() {
+        throw new UnsupportedOperationException(
+                "This utility class is not intended to be instanciated!");
+    }
+
+    /**
+     * Executes a task in the EDT without replacing other tasks.
+     * 
+     * @param task
+     *            Task to execute.
+     */
+    public static void execute(final Runnable task) {
+        execute(null, task);
+    }
+
+    /**
+     * Executes a task in the EDT. If called inside the EDT the task is
+     * executed immediately and a waiting task with the same key is discarded.
+     * Otherwise the task replaces a waiting task with the same key.
+     * 
+     * @param key
+     *            Key of the task - <code>null</code> if the task should never
+     *            be replaced.
+     * @param task
+     *            Task to execute.
+     */
+    public static void execute(final Object key, final Runnable task) {
+        if (task == null) {
+            throw new IllegalArgumentException("The argument 'task' cannot be null!");
+        }
+        if (EventQueue.isDispatchThread()) {
+            if (key != null) {
+                synchronized (LOCK) {
+                    // The waiting task is older and would overwrite the result
+                    pending.remove(key);
+                }
+            }
+            task.run();
+        } else {
+            final Object realKey;
+            if (key == null) {
+                realKey = new Object();
+            } else {
+                realKey = key;
+            }
+            synchronized (LOCK) {
+                // Remove first so the replacing task moves to the end
+                pending.remove(realKey);
+                pending.put(realKey, task);
+                if (!scheduled) {
+                    scheduled = true;
+                    EventQueue.invokeLater(DRAIN);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the number of tasks waiting for the EDT.
+     * 
+     * @return Number of tasks.
+     */
+    public static int getPendingCount() {
+        synchronized (LOCK) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Creates a key for a property of an object. Two keys are equal if they
+     * have the same owner instance and the same name.
+     * 
+     * @param owner
+     *            Object the task changes.
+     * @param name
+     *            Name of the property the task changes.
+     * 
+     * @return Key for {@link #execute(Object, Runnable)}.
+     */
+    public static Object key(final Object owner, final String name) {
+        return new Key(owner, name);
+    }
+
+    private static void drain() {
+        final Map tasks;
+        synchronized (LOCK) {
+            tasks = pending;
+            pending = new LinkedHashMap();
+            scheduled = false;
+        }
+        RuntimeException error = null;
+        final Iterator it = tasks.values().iterator();
+        while (it.hasNext()) {
+            final Runnable task = (Runnable) it.next();
+            try {
+                task.run();
+            } catch (final RuntimeException ex) {
+                // One failing task should not discard the others
+                if (error == null) {
+                    error = ex;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Key made of an owner instance and a property name.
+     */
+    private static final class Key {
+
+        private final Object owner;
+
+        private final String name;
+
+        /**
+         * Constructor with owner and name.
+         * 
+         * @param owner
+         *            Object the task changes.
+         * @param name
+         *            Name of the property.
+         */
+        public Key(final Object owner, final String name) {
+            super();
+            this.owner = owner;
+            this.name = name;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final int hashCode() {
+            return System.identityHashCode(owner) * 31
+                    + ((name == null) ? 0 : name.hashCode());
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final boolean equals(final Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            if (owner != other.owner) {
+                return false;
+            }
+            if (name == null) {
+                return other.name == null;
+            }
+            return name.equals(other.name);
+        }
+
+    }
+
+}
@@ -0,0 +1,306 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.threadsafe;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.swing.SwingUtilities;
+
+import org.fuin.utils4j.Utils4J;
+
+/**
+ * Creates proxies that call UI objects in the Event Dispatch Thread (EDT).
+ * Calls of <code>void</code> methods from other threads return immediately
+ * and are executed with the {@link EdtExecutor}, so many calls end up in a
+ * single event of the <code>EventQueue</code>. Methods that return a value are
+ * executed synchronously using
+ * <code>SwingUtilities.invokeAndWait(Runnable)</code> - All calls made before
+ * by the same thread are executed first. Inside the EDT all calls are
+ * executed directly. Example:
+ * 
+ * <pre>
+ * final FileCopyProgressListener listener = (FileCopyProgressListener) EdtProxyFactory
+ *         .create(FileCopyProgressListener.class, panel, true);
+ * </pre>
+ * 
+ * The information about every method is collected once when the proxy is
+ * created, so a call only costs a map lookup and the reflective invocation.
+ */
+public final class EdtProxyFactory {
+
+    /**
+     * Private constructor.
+     */
+    private EdtProxyFactory() {
+        throw new UnsupportedOperationException(
+                "This utility class is not intended to be instanciated!");
+    }
+
+    /**
+     * Creates a proxy that executes all calls in the EDT.
+     * 
+     * @param intf
+     *            Interface the proxy implements.
+     * @param target
+     *            Object to call - Must implement the interface.
+     * 
+     * @return Proxy that can be cast to the interface.
+     */
+    public static Object create(final Class intf, final Object target) {
+        return create(intf, target, false);
+    }
+
+    /**
+     * Creates a proxy that executes all calls in the EDT. If setters are
+     * coalesced, a call of a <code>void</code> method that starts with "set"
+     * and has exactly one argument replaces a waiting call of the same method.
+     * 
+     * @param intf
+     *            Interface the proxy implements.
+     * @param target
+     *            Object to call - Must implement the interface.
+     * @param coalesceSetters
+     *            If only the latest value of a setter should be applied
+     *            <code>true</code> else <code>false</code>.
+     * 
+     * @return Proxy that can be cast to the interface.
+     */
+    public static Object create(final Class intf, final Object target,
+            final boolean coalesceSetters) {
+        Utils4J.checkNotNull("intf", intf);
+        Utils4J.checkNotNull("target", target);
+        if (!intf.isInterface()) {
+            throw new IllegalArgumentException("The argument 'intf' must be an interface: "
+                    + intf.getName());
+        }
+        if (!intf.isInstance(target)) {
+            throw new IllegalArgumentException("The argument 'target' must implement "
+                    + intf.getName() + ": " + target.getClass().getName());
+        }
+        return Proxy.newProxyInstance(intf.getClassLoader(), new Class[] { intf },
+                new Handler(intf, target, coalesceSetters));
+    }
+
+    /**
+     * Dispatches the calls of one proxy.
+     */
+    private static final class Handler implements InvocationHandler {
+
+        private final Object target;
+
+        private final Map infos;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param intf
+         *            Interface the proxy implements.
+         * @param target
+         *            Object to call.
+         * @param coalesceSetters
+         *            If setters replace waiting calls of the same method.
+         */
+        public Handler(final Class intf, final Object target, final boolean coalesceSetters) {
+            super();
+            this.target = target;
+            final Method[] methods = intf.getMethods();
+            this.infos = new HashMap(methods.length * 2);
+            for (int i = 0; i < methods.length; i++) {
+                final Method method = methods[i];
+                final boolean isVoid = (method.getReturnType() == Void.TYPE);
+                final Object key;
+                if (isVoid && coalesceSetters && method.getName().startsWith("set")
+                        && (method.getParameterTypes().length == 1)) {
+                    key = EdtExecutor.key(target, method.getName() + "("
+                            + method.getParameterTypes()[0].getName() + ")");
+                } else {
+                    key = null;
+                }
+                infos.put(method, new MethodInfo(method, isVoid, key));
+            }
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final Object invoke(final Object proxy, final Method method, final Object[] args)
+                throws Throwable {
+            final MethodInfo info = (MethodInfo) infos.get(method);
+            if (info == null) {
+                // Methods of java.lang.Object
+                return invokeObjectMethod(proxy, method, args);
+            }
+            if (SwingUtilities.isEventDispatchThread()) {
+                return info.invoke(target, args);
+            }
+            if (info.isVoid()) {
+                EdtExecutor.execute(info.getKey(), new Runnable() {
+                    public void run() {
+                        info.invokeUnchecked(target, args);
+                    }
+                });
+                return null;
+            }
+            final Call call = new Call(info, target, args);
+            SwingUtilities.invokeAndWait(call);
+            return call.getResult();
+        }
+
+        private Object invokeObjectMethod(final Object proxy, final Method method,
+                final Object[] args) {
+            final String name = method.getName();
+            if (name.equals("equals")) {
+                return Boolean.valueOf(proxy == args[0]);
+            }
+            if (name.equals("hashCode")) {
+                return new Integer(System.identityHashCode(proxy));
+            }
+            return "EdtProxy[" + target + "]";
+        }
+
+    }
+
+    /**
+     * Precomputed information about an interface method.
+     */
+    private static final class MethodInfo {
+
+        private final Method method;
+
+        private final boolean isVoid;
+
+        private final Object key;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param method
+         *            Interface method.
+         * @param isVoid
+         *            If the method returns nothing.
+         * @param key
+         *            Key for the executor or <code>null</code>.
+         */
+        public MethodInfo(final Method method, final boolean isVoid, final Object key) {
+            super();
+            this.method = method;
+            this.isVoid = isVoid;
+            this.key = key;
+        }
+
+        public boolean isVoid() {
+            return isVoid;
+        }
+
+        public Object getKey() {
+            return key;
+        }
+
+        public Object invoke(final Object target, final Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (final InvocationTargetException ex) {
+                throw ex.getCause();
+            }
+        }
+
+        public void invokeUnchecked(final Object target, final Object[] args) {
+            try {
+                method.invoke(target, args);
+            } catch (final IllegalAccessException ex) {
+                throw new RuntimeException(ex);
+            } catch (final InvocationTargetException ex) {
+                final Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new RuntimeException(cause);
+            }
+        }
+
+    }
+
+    /**
+     * Synchronous call with result.
+     */
+    private static final class Call implements Runnable {
+
+        private final MethodInfo info;
+
+        private final Object target;
+
+        private final Object[] args;
+
+        private Object result;
+
+        private Throwable error;
+
+        /**
+         * Constructor with all data.
+         * 
+         * @param info
+         *            Method to call.
+         * @param target
+         *            Object to call.
+         * @param args
+         *            Arguments.
+         */
+        public Call(final MethodInfo info, final Object target, final Object[] args) {
+            super();
+            this.info = info;
+            this.target = target;
+            this.args = args;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final void run() {
+            try {
+                result = info.invoke(target, args);
+            } catch (final Throwable t) {
+                error = t;
+            }
+        }
+
+        /**
+         * Returns the result or throws the exception of the call.
+         * 
+         * @return Result.
+         * 
+         * @throws Throwable
+         *             Exception thrown by the target.
+         */
+        public final Object getResult() throws Throwable {
+            if (error != null) {
+                throw error;
+            }
+            return result;
+        }
+
+    }
+
+}
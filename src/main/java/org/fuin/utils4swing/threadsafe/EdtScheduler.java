@@ -0,0 +1,325 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.threadsafe;
+
+import java.awt.EventQueue;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Executes tasks in the Event Dispatch Thread (EDT) with three priorities. The
+ * queued tasks are executed in one event of the <code>EventQueue</code>:
+ * First all input related tasks, then the normal ones and the cosmetic ones
+ * last. A single event runs at most for the configured time box - If tasks are
+ * left a new event is posted, so mouse clicks and key presses waiting in the
+ * <code>EventQueue</code> are handled in between. This way a flood of progress
+ * updates never delays the reaction to the "Cancel" button. Like the
+ * {@link EdtExecutor} a task can have a key to replace a waiting task with the
+ * same key and priority.<br>
+ * <br>
+ * The times are measured with <code>System.currentTimeMillis()</code>, so the
+ * accuracy depends on the resolution of the system clock.
+ */
+public final class EdtScheduler {
+
+    /** Tasks that react to user input. */
+    public static final int PRIORITY_INPUT = 0;
+
+    /** Standard tasks. */
+    public static final int PRIORITY_NORMAL = 1;
+
+    /** Tasks that only change the look like progress bars. */
+    public static final int PRIORITY_COSMETIC = 2;
+
+    /** Default maximum time of one event in milliseconds. */
+    public static final int DEFAULT_TIME_BOX = 10;
+
+    private static final int LANE_COUNT = 3;
+
+    private final Map[] lanes;
+
+    private final Runnable drainer;
+
+    private final int timeBox;
+
+    private boolean scheduled = false;
+
+    private long drainCount = 0;
+
+    private long repostCount = 0;
+
+    private long taskCount = 0;
+
+    private long totalDrainTime = 0;
+
+    private long maxDrainTime = 0;
+
+    private long lastDrainTime = 0;
+
+    private int maxQueueDepth = 0;
+
+    /**
+     * Default constructor with the default time box.
+     */
+    public EdtScheduler() {
+        this(DEFAULT_TIME_BOX);
+    }
+
+    /**
+     * Constructor with time box.
+     * 
+     * @param timeBox
+     *            Maximum time of one event in milliseconds - Must be greater
+     *            than zero.
+     */
+    public EdtScheduler(final int timeBox) {
+        super();
+        if (timeBox <= 0) {
+            throw new IllegalArgumentException("The argument 'timeBox' must be > 0: "
+                    + timeBox);
+        }
+        this.timeBox = timeBox;
+        this.lanes = new Map[LANE_COUNT];
+        for (int i = 0; i < LANE_COUNT; i++) {
+            lanes[i] = new LinkedHashMap();
+        }
+        this.drainer = new Runnable() {
+            public void run() {
+                drain();
+            }
+        };
+    }
+
+    /**
+     * Returns the maximum time of one event.
+     * 
+     * @return Time box in milliseconds.
+     */
+    public final int getTimeBox() {
+        return timeBox;
+    }
+
+    /**
+     * Executes a task with normal priority in the EDT.
+     * 
+     * @param task
+     *            Task to execute.
+     */
+    public final void execute(final Runnable task) {
+        execute(null, task, PRIORITY_NORMAL);
+    }
+
+    /**
+     * Executes a task in the EDT.
+     * 
+     * @param task
+     *            Task to execute.
+     * @param priority
+     *            One of the <code>PRIORITY_*</code> constants.
+     */
+    public final void execute(final Runnable task, final int priority) {
+        execute(null, task, priority);
+    }
+
+    /**
+     * Executes a task in the EDT. If called inside the EDT the task is
+     * executed immediately and a waiting task with the same key and priority
+     * is discarded. Otherwise the task replaces a waiting task with the same
+     * key and priority.
+     * 
+     * @param key
+     *            Key of the task - <code>null</code> if the task should never
+     *            be replaced.
+     * @param task
+     *            Task to execute.
+     * @param priority
+     *            One of the <code>PRIORITY_*</code> constants.
+     */
+    public final void execute(final Object key, final Runnable task, final int priority) {
+        if (task == null) {
+            throw new IllegalArgumentException("The argument 'task' cannot be null!");
+        }
+        if ((priority < PRIORITY_INPUT) || (priority > PRIORITY_COSMETIC)) {
+            throw new IllegalArgumentException("Unknown priority: " + priority);
+        }
+        if (EventQueue.isDispatchThread()) {
+            if (key != null) {
+                synchronized (this) {
+                    lanes[priority].remove(key);
+                }
+            }
+            task.run();
+            return;
+        }
+        final Object realKey;
+        if (key == null) {
+            realKey = new Object();
+        } else {
+            realKey = key;
+        }
+        synchronized (this) {
+            lanes[priority].remove(realKey);
+            lanes[priority].put(realKey, task);
+            maxQueueDepth = Math.max(maxQueueDepth, depth());
+            if (!scheduled) {
+                scheduled = true;
+                EventQueue.invokeLater(drainer);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of waiting tasks.
+     * 
+     * @return Number of tasks in all lanes.
+     */
+    public final synchronized int getQueueDepth() {
+        return depth();
+    }
+
+    /**
+     * Returns the number of waiting tasks of one priority.
+     * 
+     * @param priority
+     *            One of the <code>PRIORITY_*</code> constants.
+     * 
+     * @return Number of tasks.
+     */
+    public final synchronized int getQueueDepth(final int priority) {
+        return lanes[priority].size();
+    }
+
+    /**
+     * Returns the highest number of waiting tasks so far.
+     * 
+     * @return Number of tasks in all lanes.
+     */
+    public final synchronized int getMaxQueueDepth() {
+        return maxQueueDepth;
+    }
+
+    /**
+     * Returns the number of events used to execute the tasks.
+     * 
+     * @return Number of events.
+     */
+    public final synchronized long getDrainCount() {
+        return drainCount;
+    }
+
+    /**
+     * Returns how often the time box was exceeded and a new event had to be
+     * posted.
+     * 
+     * @return Number of events posted again.
+     */
+    public final synchronized long getRepostCount() {
+        return repostCount;
+    }
+
+    /**
+     * Returns the number of tasks executed by events so far.
+     * 
+     * @return Number of tasks.
+     */
+    public final synchronized long getTaskCount() {
+        return taskCount;
+    }
+
+    /**
+     * Returns the time of the latest event.
+     * 
+     * @return Milliseconds.
+     */
+    public final synchronized long getLastDrainTime() {
+        return lastDrainTime;
+    }
+
+    /**
+     * Returns the longest time of one event so far.
+     * 
+     * @return Milliseconds.
+     */
+    public final synchronized long getMaxDrainTime() {
+        return maxDrainTime;
+    }
+
+    /**
+     * Returns the sum of the times of all events.
+     * 
+     * @return Milliseconds.
+     */
+    public final synchronized long getTotalDrainTime() {
+        return totalDrainTime;
+    }
+
+    private int depth() {
+        int depth = 0;
+        for (int i = 0; i < LANE_COUNT; i++) {
+            depth = depth + lanes[i].size();
+        }
+        return depth;
+    }
+
+    private void drain() {
+        final long start = System.currentTimeMillis();
+        final long end = start + timeBox;
+        int count = 0;
+        try {
+            Runnable task;
+            while ((task = next()) != null) {
+                count++;
+                task.run();
+                if (System.currentTimeMillis() >= end) {
+                    break;
+                }
+            }
+        } finally {
+            finished(start, count);
+        }
+    }
+
+    private synchronized Runnable next() {
+        for (int i = 0; i < LANE_COUNT; i++) {
+            final Iterator it = lanes[i].values().iterator();
+            if (it.hasNext()) {
+                final Runnable task = (Runnable) it.next();
+                it.remove();
+                return task;
+            }
+        }
+        return null;
+    }
+
+    private synchronized void finished(final long start, final int count) {
+        lastDrainTime = System.currentTimeMillis() - start;
+        totalDrainTime = totalDrainTime + lastDrainTime;
+        maxDrainTime = Math.max(maxDrainTime, lastDrainTime);
+        drainCount++;
+        taskCount = taskCount + count;
+        if (depth() > 0) {
+            // Let the EventQueue handle other events first
+            repostCount++;
+            EventQueue.invokeLater(drainer);
+        } else {
+            scheduled = false;
+        }
+    }
+
+}
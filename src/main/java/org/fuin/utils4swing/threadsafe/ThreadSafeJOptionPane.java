@@ -18,16 +18,25 @@
 package org.fuin.utils4swing.threadsafe;
 
 import java.awt.Component;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.lang.reflect.InvocationTargetException;
 
 import javax.swing.Icon;
+import javax.swing.JDialog;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * 1:1 version of <code>JOptionPane</code> for usage outside the EDT. You can
  * use this class if you want to display an option pane in any other thread
- * without violating the "Single Thread Rule".
+ * without violating the "Single Thread Rule". The <code>show*Async</code>
+ * methods return immediately with a {@link DialogFuture} instead of blocking
+ * the calling thread until the user closed the dialog. The variants with a
+ * timeout close the dialog after the given time and return a defined result.
+ * All blocking methods can also be called inside the EDT. Dialogs can be reused
+ * to show them faster (see {@link #setDialogPooling(boolean)}).
  */
 public final class ThreadSafeJOptionPane {
 
@@ -39,8 +48,58 @@ public final class ThreadSafeJOptionPane {
                 "This utility class is not intended to be instanciated!");
     }
 
+    /**
+     * Enables or disables the reuse of dialogs. If enabled the message,
+     * confirm and option dialogs are not created again for every call:
+     * There is one prepared dialog for every combination of parent window,
+     * message type and option type. Only message, icon, options and title are
+     * exchanged before it's shown again. This avoids the creation of the
+     * window and its component tree that takes a noticeable time with some
+     * Look and Feels. Input and internal dialogs are never reused.
+     * 
+     * @param pooling
+     *            If dialogs should be reused <code>true</code> else
+     *            <code>false</code>.
+     */
+    public static void setDialogPooling(final boolean pooling) {
+        DialogPool.setEnabled(pooling);
+        if (!pooling) {
+            clearDialogPool();
+        }
+    }
+
+    /**
+     * Returns if dialogs are reused.
+     * 
+     * @return If pooling is enabled <code>true</code> else <code>false</code>.
+     */
+    public static boolean isDialogPooling() {
+        return DialogPool.isEnabled();
+    }
+
+    /**
+     * Disposes all pooled dialogs that are currently not visible. If called
+     * outside the EDT this method will switch to the UI thread using
+     * <code>SwingUtilities.invokeLater(Runnable)</code>.
+     */
+    public static void clearDialogPool() {
+        if (SwingUtilities.isEventDispatchThread()) {
+            DialogPool.clear();
+        } else {
+            SwingUtilities.invokeLater(new Runnable() {
+                public void run() {
+                    DialogPool.clear();
+                }
+            });
+        }
+    }
+
     private static int execute(final IntOptionPane optionPane) {
         final IntResult result = new IntResult();
+        if (SwingUtilities.isEventDispatchThread()) {
+            optionPane.show(result);
+            return result.getResult();
+        }
         try {
             SwingUtilities.invokeAndWait(new Runnable() {
                 public void run() {
@@ -48,6 +107,7 @@ public final class ThreadSafeJOptionPane {
                 }
             });
         } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(ex);
         } catch (InvocationTargetException ex) {
             throw new RuntimeException(ex);
@@ -57,6 +117,10 @@ public final class ThreadSafeJOptionPane {
 
     private static String execute(final StringOptionPane optionPane) {
         final StringResult result = new StringResult();
+        if (SwingUtilities.isEventDispatchThread()) {
+            optionPane.show(result);
+            return result.getResult();
+        }
         try {
             SwingUtilities.invokeAndWait(new Runnable() {
                 public void run() {
@@ -64,6 +128,7 @@ public final class ThreadSafeJOptionPane {
                 }
             });
         } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(ex);
         } catch (InvocationTargetException ex) {
             throw new RuntimeException(ex);
@@ -73,6 +138,10 @@ public final class ThreadSafeJOptionPane {
 
     private static Object execute(final ObjectOptionPane optionPane) {
         final ObjectResult result = new ObjectResult();
+        if (SwingUtilities.isEventDispatchThread()) {
+            optionPane.show(result);
+            return result.getResult();
+        }
         try {
             SwingUtilities.invokeAndWait(new Runnable() {
                 public void run() {
@@ -80,6 +149,7 @@ public final class ThreadSafeJOptionPane {
                 }
             });
         } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(ex);
         } catch (InvocationTargetException ex) {
             throw new RuntimeException(ex);
@@ -88,6 +158,10 @@ public final class ThreadSafeJOptionPane {
     }
 
     private static void execute(final VoidOptionPane optionPane) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            optionPane.show();
+            return;
+        }
         try {
             SwingUtilities.invokeAndWait(new Runnable() {
                 public void run() {
@@ -95,12 +169,57 @@ public final class ThreadSafeJOptionPane {
                 }
             });
         } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new RuntimeException(ex);
         } catch (InvocationTargetException ex) {
             throw new RuntimeException(ex);
         }
     }
 
+    private static Object execute(final TimedDialog dialog) {
+        if (SwingUtilities.isEventDispatchThread()) {
+            dialog.run();
+        } else {
+            SwingUtilities.invokeLater(dialog);
+            try {
+                if (!dialog.getFuture().waitFor(dialog.getTimeout()) && dialog.abandon()) {
+                    // The EDT is busy - The dialog will not be shown anymore
+                    return dialog.getTimeoutResult();
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            }
+        }
+        try {
+            return dialog.getFuture().get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static DialogFuture executeAsync(final ObjectOptionPane optionPane,
+            final DialogCallback callback) {
+        final DialogFuture future = new DialogFuture();
+        if (callback != null) {
+            future.addCallback(callback);
+        }
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                final ObjectResult result = new ObjectResult();
+                try {
+                    optionPane.show(result);
+                } catch (final Throwable t) {
+                    future.fail(t);
+                    return;
+                }
+                future.complete(result.getResult());
+            }
+        });
+        return future;
+    }
+
     /**
      * Brings up a dialog with the options <i>Yes</i>, <i>No</i> and
      * <i>Cancel</i>; with the title, <b>Select an Option</b>.
@@ -118,7 +237,7 @@ public final class ThreadSafeJOptionPane {
 
         return execute(new IntOptionPane() {
             public void show(final IntResult result) {
-                result.setResult(JOptionPane.showConfirmDialog(parentComponent, message));
+                result.setResult(DialogPool.showConfirmDialog(parentComponent, message));
             }
         });
 
@@ -148,7 +267,7 @@ public final class ThreadSafeJOptionPane {
 
         return execute(new IntOptionPane() {
             public void show(final IntResult result) {
-                result.setResult(JOptionPane.showConfirmDialog(parentComponent, message,
+                result.setResult(DialogPool.showConfirmDialog(parentComponent, message,
                         title, optionType));
             }
         });
@@ -188,7 +307,7 @@ public final class ThreadSafeJOptionPane {
 
         return execute(new IntOptionPane() {
             public void show(final IntResult result) {
-                result.setResult(JOptionPane.showConfirmDialog(parentComponent, message,
+                result.setResult(DialogPool.showConfirmDialog(parentComponent, message,
                         title, optionType, messageType));
             }
         });
@@ -229,7 +348,7 @@ public final class ThreadSafeJOptionPane {
 
         return execute(new IntOptionPane() {
             public void show(final IntResult result) {
-                result.setResult(JOptionPane.showConfirmDialog(parentComponent, message,
+                result.setResult(DialogPool.showConfirmDialog(parentComponent, message,
                         title, optionType, messageType, icon));
             }
         });
@@ -828,7 +947,7 @@ public final class ThreadSafeJOptionPane {
 
         execute(new VoidOptionPane() {
             public void show() {
-                JOptionPane.showMessageDialog(parentComponent, message);
+                DialogPool.showMessageDialog(parentComponent, message);
             }
         });
 
@@ -858,7 +977,7 @@ public final class ThreadSafeJOptionPane {
 
         execute(new VoidOptionPane() {
             public void show() {
-                JOptionPane.showMessageDialog(parentComponent, message, title, messageType);
+                DialogPool.showMessageDialog(parentComponent, message, title, messageType);
             }
         });
 
@@ -890,7 +1009,7 @@ public final class ThreadSafeJOptionPane {
 
         execute(new VoidOptionPane() {
             public void show() {
-                JOptionPane.showMessageDialog(parentComponent, message, title, messageType,
+                DialogPool.showMessageDialog(parentComponent, message, title, messageType,
                         icon);
             }
         });
@@ -952,7 +1071,7 @@ public final class ThreadSafeJOptionPane {
 
         return execute(new IntOptionPane() {
             public void show(final IntResult result) {
-                result.setResult(JOptionPane.showOptionDialog(parentComponent, message, title,
+                result.setResult(DialogPool.showOptionDialog(parentComponent, message, title,
                         optionType, messageType, icon, options, initialValue));
             }
         });
@@ -960,6 +1079,338 @@ public final class ThreadSafeJOptionPane {
     }
     // CHECKSTYLE:ON
 
+    /**
+     * Asynchronous version of
+     * {@link #showConfirmDialog(Component, Object, String, int, int)}. Returns
+     * immediately - The dialog is shown later in the EDT.
+     * 
+     * @param parentComponent
+     *            determines the <code>Frame</code> in which the dialog is
+     *            displayed; if <code>null</code>, or if the
+     *            <code>parentComponent</code> has no <code>Frame</code>, a
+     *            default <code>Frame</code> is used.
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the title string for the dialog
+     * @param optionType
+     *            an integer designating the options available on the dialog:
+     *            <code>YES_NO_OPTION</code>, <code>YES_NO_CANCEL_OPTION</code>,
+     *            or <code>OK_CANCEL_OPTION</code>
+     * @param messageType
+     *            an integer designating the kind of message this is
+     * @param callback
+     *            informed when the dialog was closed; can be <code>null</code>
+     * @return future with an <code>Integer</code> indicating the option
+     *         selected by the user
+     */
+    public static DialogFuture showConfirmDialogAsync(final Component parentComponent,
+            final Object message, final String title, final int optionType,
+            final int messageType, final DialogCallback callback) {
+
+        return executeAsync(new ObjectOptionPane() {
+            public void show(final ObjectResult result) {
+                result.setResult(new Integer(DialogPool.showConfirmDialog(parentComponent,
+                        message, title, optionType, messageType)));
+            }
+        }, callback);
+
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link #showInputDialog(Component, Object, String, int)}. Returns
+     * immediately - The dialog is shown later in the EDT.
+     * 
+     * @param parentComponent
+     *            the parent <code>Component</code> for the dialog
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the <code>String</code> to display in the dialog title bar
+     * @param messageType
+     *            the type of message that is to be displayed
+     * @param callback
+     *            informed when the dialog was closed; can be <code>null</code>
+     * @return future with the user's input, or <code>null</code> meaning the
+     *         user canceled the input
+     */
+    public static DialogFuture showInputDialogAsync(final Component parentComponent,
+            final Object message, final String title, final int messageType,
+            final DialogCallback callback) {
+
+        return executeAsync(new ObjectOptionPane() {
+            public void show(final ObjectResult result) {
+                result.setResult(JOptionPane.showInputDialog(parentComponent, message, title,
+                        messageType));
+            }
+        }, callback);
+
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link #showInputDialog(Component, Object, String, int, Icon, Object[], Object)}
+     * . Returns immediately - The dialog is shown later in the EDT.
+     * 
+     * @param parentComponent
+     *            the parent <code>Component</code> for the dialog
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the <code>String</code> to display in the dialog title bar
+     * @param messageType
+     *            the type of message to be displayed
+     * @param icon
+     *            the <code>Icon</code> image to display
+     * @param selectionValues
+     *            an array of <code>Object</code>s that gives the possible
+     *            selections
+     * @param initialSelectionValue
+     *            the value used to initialize the input field
+     * @param callback
+     *            informed when the dialog was closed; can be <code>null</code>
+     * @return future with the user's input, or <code>null</code> meaning the
+     *         user canceled the input
+     */
+    // CHECKSTYLE:OFF Maximum parameters disabled
+    public static DialogFuture showInputDialogAsync(final Component parentComponent,
+            final Object message, final String title, final int messageType, final Icon icon,
+            final Object[] selectionValues, final Object initialSelectionValue,
+            final DialogCallback callback) {
+
+        return executeAsync(new ObjectOptionPane() {
+            public void show(final ObjectResult result) {
+                result.setResult(JOptionPane.showInputDialog(parentComponent, message, title,
+                        messageType, icon, selectionValues, initialSelectionValue));
+            }
+        }, callback);
+
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Asynchronous version of
+     * {@link #showMessageDialog(Component, Object, String, int)}. Returns
+     * immediately - The dialog is shown later in the EDT.
+     * 
+     * @param parentComponent
+     *            determines the <code>Frame</code> in which the dialog is
+     *            displayed; if <code>null</code>, or if the
+     *            <code>parentComponent</code> has no <code>Frame</code>, a
+     *            default <code>Frame</code> is used
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the title string for the dialog
+     * @param messageType
+     *            the type of message to be displayed
+     * @param callback
+     *            informed when the dialog was closed; can be <code>null</code>
+     * @return future with a <code>null</code> result that is done when the
+     *         user closed the dialog
+     */
+    public static DialogFuture showMessageDialogAsync(final Component parentComponent,
+            final Object message, final String title, final int messageType,
+            final DialogCallback callback) {
+
+        return executeAsync(new ObjectOptionPane() {
+            public void show(final ObjectResult result) {
+                DialogPool.showMessageDialog(parentComponent, message, title, messageType);
+            }
+        }, callback);
+
+    }
+
+    /**
+     * Asynchronous version of
+     * {@link #showOptionDialog(Component, Object, String, int, int, Icon, Object[], Object)}
+     * . Returns immediately - The dialog is shown later in the EDT.
+     * 
+     * @param parentComponent
+     *            determines the <code>Frame</code> in which the dialog is
+     *            displayed; if <code>null</code>, or if the
+     *            <code>parentComponent</code> has no <code>Frame</code>, a
+     *            default <code>Frame</code> is used
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the title string for the dialog
+     * @param optionType
+     *            an integer designating the options available on the dialog
+     * @param messageType
+     *            an integer designating the kind of message this is
+     * @param icon
+     *            the icon to display in the dialog
+     * @param options
+     *            an array of objects indicating the possible choices the user
+     *            can make; can be <code>null</code>
+     * @param initialValue
+     *            the object that represents the default selection for the
+     *            dialog; can be <code>null</code>
+     * @param callback
+     *            informed when the dialog was closed; can be <code>null</code>
+     * @return future with an <code>Integer</code> indicating the option
+     *         chosen by the user, or <code>CLOSED_OPTION</code> if the user
+     *         closed the dialog
+     */
+    // CHECKSTYLE:OFF Maximum parameters disabled
+    public static DialogFuture showOptionDialogAsync(final Component parentComponent,
+            final Object message, final String title, final int optionType,
+            final int messageType, final Icon icon, final Object[] options,
+            final Object initialValue, final DialogCallback callback) {
+
+        return executeAsync(new ObjectOptionPane() {
+            public void show(final ObjectResult result) {
+                result.setResult(new Integer(DialogPool.showOptionDialog(parentComponent,
+                        message, title, optionType, messageType, icon, options, initialValue)));
+            }
+        }, callback);
+
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Same as {@link #showConfirmDialog(Component, Object, String, int, int)}
+     * but the dialog is closed automatically after a given time.
+     * 
+     * @param parentComponent
+     *            determines the <code>Frame</code> in which the dialog is
+     *            displayed; if <code>null</code>, or if the
+     *            <code>parentComponent</code> has no <code>Frame</code>, a
+     *            default <code>Frame</code> is used.
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the title string for the dialog
+     * @param optionType
+     *            an integer designating the options available on the dialog:
+     *            <code>YES_NO_OPTION</code>, <code>YES_NO_CANCEL_OPTION</code>,
+     *            or <code>OK_CANCEL_OPTION</code>
+     * @param messageType
+     *            an integer designating the kind of message this is
+     * @param timeoutMillis
+     *            maximum time to wait for the user in milliseconds
+     * @param timeoutResult
+     *            the result if the user did not answer in time
+     * @return an integer indicating the option selected by the user or
+     *         <code>timeoutResult</code>
+     */
+    // CHECKSTYLE:OFF Maximum parameters disabled
+    public static int showConfirmDialog(final Component parentComponent, final Object message,
+            final String title, final int optionType, final int messageType,
+            final long timeoutMillis, final int timeoutResult) {
+
+        return ((Integer) execute(new TimedDialog(parentComponent, message, title,
+                optionType, messageType, null, null, null, TimedDialog.OPTION, timeoutMillis,
+                new Integer(timeoutResult)))).intValue();
+
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Same as
+     * {@link #showOptionDialog(Component, Object, String, int, int, Icon, Object[], Object)}
+     * but the dialog is closed automatically after a given time.
+     * 
+     * @param parentComponent
+     *            determines the <code>Frame</code> in which the dialog is
+     *            displayed; if <code>null</code>, or if the
+     *            <code>parentComponent</code> has no <code>Frame</code>, a
+     *            default <code>Frame</code> is used
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the title string for the dialog
+     * @param optionType
+     *            an integer designating the options available on the dialog
+     * @param messageType
+     *            an integer designating the kind of message this is
+     * @param icon
+     *            the icon to display in the dialog
+     * @param options
+     *            an array of objects indicating the possible choices the user
+     *            can make; can be <code>null</code>
+     * @param initialValue
+     *            the object that represents the default selection for the
+     *            dialog; can be <code>null</code>
+     * @param timeoutMillis
+     *            maximum time to wait for the user in milliseconds
+     * @param timeoutResult
+     *            the result if the user did not answer in time
+     * @return an integer indicating the option chosen by the user,
+     *         <code>CLOSED_OPTION</code> if the user closed the dialog or
+     *         <code>timeoutResult</code>
+     */
+    // CHECKSTYLE:OFF Maximum parameters disabled
+    public static int showOptionDialog(final Component parentComponent, final Object message,
+            final String title, final int optionType, final int messageType, final Icon icon,
+            final Object[] options, final Object initialValue, final long timeoutMillis,
+            final int timeoutResult) {
+
+        return ((Integer) execute(new TimedDialog(parentComponent, message, title,
+                optionType, messageType, icon, options, initialValue, TimedDialog.OPTION,
+                timeoutMillis, new Integer(timeoutResult)))).intValue();
+
+    }
+    // CHECKSTYLE:ON
+
+    /**
+     * Same as {@link #showInputDialog(Component, Object, String, int)} but the
+     * dialog is closed automatically after a given time.
+     * 
+     * @param parentComponent
+     *            the parent <code>Component</code> for the dialog
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the <code>String</code> to display in the dialog title bar
+     * @param messageType
+     *            the type of message that is to be displayed
+     * @param timeoutMillis
+     *            maximum time to wait for the user in milliseconds
+     * @param timeoutResult
+     *            the result if the user did not answer in time
+     * @return user's input, <code>null</code> meaning the user canceled the
+     *         input or <code>timeoutResult</code>
+     */
+    public static String showInputDialog(final Component parentComponent,
+            final Object message, final String title, final int messageType,
+            final long timeoutMillis, final String timeoutResult) {
+
+        return (String) execute(new TimedDialog(parentComponent, message, title,
+                JOptionPane.OK_CANCEL_OPTION, messageType, null, null, null, TimedDialog.INPUT,
+                timeoutMillis, timeoutResult));
+
+    }
+
+    /**
+     * Same as {@link #showMessageDialog(Component, Object, String, int)} but
+     * the dialog is closed automatically after a given time.
+     * 
+     * @param parentComponent
+     *            determines the <code>Frame</code> in which the dialog is
+     *            displayed; if <code>null</code>, or if the
+     *            <code>parentComponent</code> has no <code>Frame</code>, a
+     *            default <code>Frame</code> is used
+     * @param message
+     *            the <code>Object</code> to display
+     * @param title
+     *            the title string for the dialog
+     * @param messageType
+     *            the type of message to be displayed
+     * @param timeoutMillis
+     *            maximum time to wait for the user in milliseconds
+     */
+    public static void showMessageDialog(final Component parentComponent,
+            final Object message, final String title, final int messageType,
+            final long timeoutMillis) {
+
+        execute(new TimedDialog(parentComponent, message, title, JOptionPane.DEFAULT_OPTION,
+                messageType, null, null, null, TimedDialog.MESSAGE, timeoutMillis, null));
+
+    }
+
     /**
      * Helper class for storing int results.
      */
@@ -1047,4 +1498,162 @@ public final class ThreadSafeJOptionPane {
 
     }
 
+    /**
+     * Helper class for dialogs that are closed after a given time. Works like
+     * the static <code>JOptionPane</code> methods but keeps a reference to the
+     * dialog so a Swing timer can close it.
+     */
+    private static final class TimedDialog implements Runnable {
+
+        static final int MESSAGE = 0;
+
+        static final int OPTION = 1;
+
+        static final int INPUT = 2;
+
+        private final Component parentComponent;
+
+        private final Object message;
+
+        private final String title;
+
+        private final int optionType;
+
+        private final int messageType;
+
+        private final Icon icon;
+
+        private final Object[] options;
+
+        private final Object initialValue;
+
+        private final int kind;
+
+        private final long timeout;
+
+        private final long deadline;
+
+        private final Object timeoutResult;
+
+        private final DialogFuture future = new DialogFuture();
+
+        private boolean timedOut = false;
+
+        private boolean started = false;
+
+        private boolean abandoned = false;
+
+        // CHECKSTYLE:OFF Maximum parameters disabled
+        public TimedDialog(final Component parentComponent, final Object message,
+                final String title, final int optionType, final int messageType,
+                final Icon icon, final Object[] options, final Object initialValue,
+                final int kind, final long timeout, final Object timeoutResult) {
+            super();
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("The argument 'timeoutMillis' must be > 0: "
+                        + timeout);
+            }
+            this.parentComponent = parentComponent;
+            this.message = message;
+            this.title = title;
+            this.optionType = optionType;
+            this.messageType = messageType;
+            this.icon = icon;
+            this.options = options;
+            this.initialValue = initialValue;
+            this.kind = kind;
+            this.timeout = timeout;
+            this.deadline = System.currentTimeMillis() + timeout;
+            this.timeoutResult = timeoutResult;
+        }
+        // CHECKSTYLE:ON
+
+        public DialogFuture getFuture() {
+            return future;
+        }
+
+        public long getTimeout() {
+            return timeout;
+        }
+
+        public Object getTimeoutResult() {
+            return timeoutResult;
+        }
+
+        /**
+         * Gives up waiting for the dialog unless it is already showing.
+         * 
+         * @return If the dialog will not be shown anymore <code>true</code>
+         *         else <code>false</code> (the result of the user will come).
+         */
+        public synchronized boolean abandon() {
+            if (started) {
+                return false;
+            }
+            abandoned = true;
+            return true;
+        }
+
+        public void run() {
+            try {
+                final long remaining = deadline - System.currentTimeMillis();
+                final boolean visible;
+                synchronized (this) {
+                    // The caller may have given up already
+                    started = !abandoned && (remaining > 0);
+                    visible = started;
+                }
+                if (visible) {
+                    future.complete(show(remaining));
+                } else {
+                    future.complete(timeoutResult);
+                }
+            } catch (final RuntimeException ex) {
+                future.fail(ex);
+                throw ex;
+            }
+        }
+
+        private Object show(final long remaining) {
+            final JOptionPane pane = new JOptionPane(message, messageType, optionType, icon,
+                    options, initialValue);
+            pane.setWantsInput(kind == INPUT);
+            pane.setComponentOrientation(((parentComponent == null) ? JOptionPane
+                    .getRootFrame() : parentComponent).getComponentOrientation());
+            final JDialog dialog = pane.createDialog(parentComponent, title);
+            final Timer timer = new Timer((int) Math.min(Integer.MAX_VALUE, remaining),
+                    new ActionListener() {
+                        public void actionPerformed(final ActionEvent e) {
+                            timedOut = true;
+                            dialog.setVisible(false);
+                        }
+                    });
+            timer.setRepeats(false);
+            timer.start();
+            try {
+                pane.selectInitialValue();
+                dialog.setVisible(true);
+            } finally {
+                timer.stop();
+                dialog.dispose();
+            }
+            // An answer given just before the timer fired wins
+            if (timedOut && (pane.getValue() == JOptionPane.UNINITIALIZED_VALUE)) {
+                return timeoutResult;
+            }
+            if (kind == INPUT) {
+                final Object value = pane.getInputValue();
+                if (value == JOptionPane.UNINITIALIZED_VALUE) {
+                    return null;
+                }
+                return value;
+            }
+            if (kind == MESSAGE) {
+                return null;
+            }
+            return new Integer(DialogPool.selectedIndex(options, pane.getValue()));
+        }
+
+    }
+
 }
@@ -0,0 +1,264 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+
+/**
+ * Tests for {@link DeltaCopy}.
+ */
+public final class DeltaCopyTest {
+
+    private static final int SIZE = 64 * 1024;
+
+    /** Block size used for a destination of {@link #SIZE} bytes. */
+    private static final int BLOCK_SIZE = 2 * 1024;
+
+    private File dir;
+
+    private File src;
+
+    private File dest;
+
+    /**
+     * Creates the test directory.
+     * 
+     * @throws IOException
+     *             Error creating the directory.
+     * 
+     * @testng.before-method
+     */
+    public final void setUp() throws IOException {
+        dir = File.createTempFile("DeltaCopyTest", "");
+        dir.delete();
+        dir.mkdir();
+        src = new File(dir, "src.bin");
+        dest = new File(dir, "dest.bin");
+    }
+
+    /**
+     * Removes the test directory.
+     * 
+     * @testng.after-method
+     */
+    public final void tearDown() {
+        delete(dir);
+    }
+
+    /**
+     * Identical files need no literal data.
+     * 
+     * @throws IOException
+     *             Error copying.
+     * 
+     * @testng.test
+     */
+    public final void testMatching() throws IOException {
+        final byte[] data = random(SIZE, 1);
+        write(src, data);
+        write(dest, data);
+
+        Assert.assertEquals(copy(), 0);
+        assertContent(dest, data);
+    }
+
+    /**
+     * A changed block is written in place and only the block is literal.
+     * 
+     * @throws IOException
+     *             Error copying.
+     * 
+     * @testng.test
+     */
+    public final void testChangedInPlace() throws IOException {
+        final byte[] old = random(SIZE, 2);
+        final byte[] data = (byte[]) old.clone();
+        for (int i = 0; i < 100; i++) {
+            data[5 * BLOCK_SIZE + 10 + i] = (byte) ~data[5 * BLOCK_SIZE + 10 + i];
+        }
+        write(src, data);
+        write(dest, old);
+        // Would make a rebuild fail - The in place update does not need it
+        new File(dir, "dest.bin.delta").mkdir();
+
+        Assert.assertEquals(copy(), BLOCK_SIZE);
+        assertContent(dest, data);
+    }
+
+    /**
+     * A shorter source truncates the destination in place.
+     * 
+     * @throws IOException
+     *             Error copying.
+     * 
+     * @testng.test
+     */
+    public final void testTruncatedInPlace() throws IOException {
+        final byte[] old = random(SIZE, 3);
+        final byte[] data = new byte[SIZE - 3 * BLOCK_SIZE];
+        System.arraycopy(old, 0, data, 0, data.length);
+        write(src, data);
+        write(dest, old);
+
+        Assert.assertEquals(copy(), 0);
+        assertContent(dest, data);
+    }
+
+    /**
+     * Inserted bytes shift all following blocks - The file is rebuilt from
+     * the old blocks.
+     * 
+     * @throws IOException
+     *             Error copying.
+     * 
+     * @testng.test
+     */
+    public final void testShiftedRebuild() throws IOException {
+        final byte[] old = random(SIZE, 4);
+        final byte[] insert = random(10, 5);
+        final int pos = 3 * BLOCK_SIZE + 100;
+        final byte[] data = new byte[SIZE + insert.length];
+        System.arraycopy(old, 0, data, 0, pos);
+        System.arraycopy(insert, 0, data, pos, insert.length);
+        System.arraycopy(old, pos, data, pos + insert.length, SIZE - pos);
+        write(src, data);
+        write(dest, old);
+
+        final long literal = copy();
+        Assert.assertTrue(literal <= BLOCK_SIZE + insert.length, "literal=" + literal);
+        assertContent(dest, data);
+        Assert.assertFalse(new File(dir, "dest.bin.delta").exists());
+    }
+
+    /**
+     * A failed rebuild leaves the old destination unchanged.
+     * 
+     * @throws IOException
+     *             Error creating the test files.
+     * 
+     * @testng.test
+     */
+    public final void testRebuildFailureKeepsDestination() throws IOException {
+        final byte[] old = random(SIZE, 6);
+        final byte[] data = new byte[SIZE + 1];
+        System.arraycopy(old, 0, data, 1, SIZE);
+        write(src, data);
+        write(dest, old);
+        // The temporary file cannot be created
+        new File(dir, "dest.bin.delta").mkdir();
+
+        try {
+            copy();
+            Assert.fail("Expected an IOException");
+        } catch (final IOException ex) {
+            assertContent(dest, old);
+        }
+    }
+
+    /**
+     * An empty destination has no blocks - Everything is literal.
+     * 
+     * @throws IOException
+     *             Error copying.
+     * 
+     * @testng.test
+     */
+    public final void testEmptyDestination() throws IOException {
+        final byte[] data = random(SIZE, 7);
+        write(src, data);
+        write(dest, new byte[0]);
+
+        Assert.assertEquals(copy(), SIZE);
+        assertContent(dest, data);
+    }
+
+    /**
+     * A destination shorter than a block has no blocks - Everything is
+     * literal.
+     * 
+     * @throws IOException
+     *             Error copying.
+     * 
+     * @testng.test
+     */
+    public final void testShortDestination() throws IOException {
+        final byte[] data = random(SIZE, 8);
+        final byte[] old = new byte[100];
+        System.arraycopy(data, 0, old, 0, old.length);
+        write(src, data);
+        write(dest, old);
+
+        Assert.assertEquals(copy(), SIZE);
+        assertContent(dest, data);
+    }
+
+    private long copy() throws IOException {
+        return new DeltaCopy(null, null).copy(src, dest, null);
+    }
+
+    private static byte[] random(final int size, final long seed) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static void write(final File file, final byte[] data) throws IOException {
+        final OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void assertContent(final File file, final byte[] expected)
+            throws IOException {
+        final byte[] buf = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            int count;
+            while ((pos < buf.length) && ((count = in.read(buf, pos, buf.length - pos)) > 0)) {
+                pos = pos + count;
+            }
+        } finally {
+            in.close();
+        }
+        Assert.assertTrue(Arrays.equals(buf, expected), "Content of " + file + " differs");
+    }
+
+    private static void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        file.delete();
+    }
+
+}
@@ -0,0 +1,437 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.testng.Assert;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for {@link SegmentedDownloader} against a local HTTP server.
+ */
+public final class SegmentedDownloaderTest {
+
+    private static final int SIZE = 256 * 1024;
+
+    private static final String ETAG = "\"v1\"";
+
+    private static final int HTTP_OK = 200;
+
+    private static final int HTTP_PARTIAL = 206;
+
+    private static final int HTTP_BAD_METHOD = 405;
+
+    private final byte[] content = createContent();
+
+    private HttpServer server;
+
+    private int partialCount;
+
+    private int fullCount;
+
+    /** Start positions of all range requests. */
+    private final List requestStarts = new ArrayList();
+
+    /** Start of a dropped range request - Position where the body stopped. */
+    private final Map dropped = new HashMap();
+
+    /**
+     * Starts the server.
+     * 
+     * @throws IOException
+     *             Error starting the server.
+     * 
+     * @testng.before-method
+     */
+    public final void setUp() throws IOException {
+        partialCount = 0;
+        fullCount = 0;
+        requestStarts.clear();
+        dropped.clear();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/range", new Handler(true, true, ETAG, false));
+        server.createContext("/norange", new Handler(true, false, ETAG, false));
+        server.createContext("/nohead", new Handler(false, true, ETAG, false));
+        server.createContext("/changed", new Handler(true, true, "\"v2\"", false));
+        server.createContext("/drop", new Handler(true, true, ETAG, true));
+        server.start();
+    }
+
+    /**
+     * Stops the server.
+     * 
+     * @testng.after-method
+     */
+    public final void tearDown() {
+        server.stop(0);
+    }
+
+    /**
+     * Server that supports ranges returns 206 for every segment.
+     * 
+     * @throws IOException
+     *             Error downloading.
+     * 
+     * @testng.test
+     */
+    public final void testPartial() throws IOException {
+        final File dest = download("/range");
+        try {
+            assertContent(dest);
+            Assert.assertTrue(partialCount >= 4, "partialCount=" + partialCount);
+            Assert.assertEquals(fullCount, 0);
+        } finally {
+            dest.delete();
+        }
+    }
+
+    /**
+     * Every segment is interrupted once in the middle of the body and
+     * retried on its own from the last byte written.
+     * 
+     * @throws IOException
+     *             Error downloading.
+     * 
+     * @testng.test
+     */
+    public final void testSegmentRetry() throws IOException {
+        final ByteCounter counter = new ByteCounter();
+        final SegmentedDownloader downloader = new SegmentedDownloader(counter, null);
+        downloader.setConnectionCount(4);
+        downloader.setMinSegmentSize(16 * 1024);
+        downloader.setMaxRetries(1);
+        final File dest = File.createTempFile("SegmentedDownloaderTest", ".bin");
+        try {
+            Assert.assertEquals(downloader.download(url("/drop"), dest, 1), SIZE);
+            assertContent(dest);
+            Assert.assertTrue(dropped.size() >= 4, "dropped=" + dropped.size());
+            synchronized (this) {
+                final Iterator it = dropped.values().iterator();
+                while (it.hasNext()) {
+                    final Object retryStart = it.next();
+                    Assert.assertTrue(requestStarts.contains(retryStart), "No retry from "
+                            + retryStart + ": " + requestStarts);
+                }
+            }
+            Assert.assertEquals(counter.getTotal(), SIZE);
+            Assert.assertEquals(counter.getMax(), SIZE);
+        } finally {
+            dest.delete();
+        }
+    }
+
+    /**
+     * Server without range support is read with a single request.
+     * 
+     * @throws IOException
+     *             Error downloading.
+     * 
+     * @testng.test
+     */
+    public final void testNoRange() throws IOException {
+        final File dest = download("/norange");
+        try {
+            assertContent(dest);
+            Assert.assertEquals(partialCount, 0);
+            Assert.assertEquals(fullCount, 1);
+        } finally {
+            dest.delete();
+        }
+    }
+
+    /**
+     * Server that answers HEAD with 405 falls back to a single request.
+     * 
+     * @throws IOException
+     *             Error downloading.
+     * 
+     * @testng.test
+     */
+    public final void testHeadNotAllowed() throws IOException {
+        final File dest = download("/nohead");
+        try {
+            assertContent(dest);
+            Assert.assertEquals(partialCount, 0);
+            Assert.assertEquals(fullCount, 1);
+        } finally {
+            dest.delete();
+        }
+    }
+
+    /**
+     * Resource that changes after HEAD fails and leaves no file behind.
+     * 
+     * @throws IOException
+     *             Error creating the destination file.
+     * 
+     * @testng.test
+     */
+    public final void testChanged() throws IOException {
+        final File dest = File.createTempFile("SegmentedDownloaderTest", ".bin");
+        try {
+            createDownloader().download(url("/changed"), dest, 1);
+            Assert.fail("Expected an IOException");
+        } catch (final IOException ex) {
+            Assert.assertFalse(dest.exists());
+            Assert.assertEquals(partialCount, 0);
+        } finally {
+            dest.delete();
+        }
+    }
+
+    private File download(final String path) throws IOException {
+        final File dest = File.createTempFile("SegmentedDownloaderTest", ".bin");
+        final long count = createDownloader().download(url(path), dest, 1);
+        Assert.assertEquals(count, SIZE);
+        return dest;
+    }
+
+    private SegmentedDownloader createDownloader() {
+        final SegmentedDownloader downloader = new SegmentedDownloader(null, null);
+        downloader.setConnectionCount(4);
+        downloader.setMinSegmentSize(16 * 1024);
+        downloader.setMaxRetries(0);
+        return downloader;
+    }
+
+    private URL url(final String path) throws IOException {
+        return new URL("http://127.0.0.1:" + server.getAddress().getPort() + path);
+    }
+
+    private void assertContent(final File file) throws IOException {
+        final byte[] buf = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            int count;
+            while ((pos < buf.length) && ((count = in.read(buf, pos, buf.length - pos)) > 0)) {
+                pos = pos + count;
+            }
+        } finally {
+            in.close();
+        }
+        Assert.assertTrue(Arrays.equals(buf, content), "Content differs");
+    }
+
+    private static byte[] createContent() {
+        final byte[] buf = new byte[SIZE];
+        for (int i = 0; i < buf.length; i++) {
+            buf[i] = (byte) (i * 31 + i / 251);
+        }
+        return buf;
+    }
+
+    /**
+     * Returns if a range request should be interrupted and records it. Only
+     * the first request of a segment is interrupted, retries are not.
+     * 
+     * @param start
+     *            First byte requested.
+     * @param written
+     *            Number of bytes that will be sent before the interruption.
+     * 
+     * @return If this is the first request for the segment.
+     */
+    private synchronized boolean drop(final int start, final int written) {
+        final Long key = new Long(start);
+        if (dropped.containsKey(key) || dropped.containsValue(key)) {
+            return false;
+        }
+        dropped.put(key, new Long(start + written));
+        return true;
+    }
+
+    private synchronized void requested(final int start) {
+        requestStarts.add(new Long(start));
+    }
+
+    private synchronized void count(final boolean partial) {
+        if (partial) {
+            partialCount++;
+        } else {
+            fullCount++;
+        }
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+    /**
+     * Remembers the byte totals reported by the downloader.
+     */
+    private static final class ByteCounter implements FileCopyProgressListener {
+
+        private int total = 0;
+
+        private int max = 0;
+
+        /**
+         * {@inheritDoc}
+         */
+        public final void updateFile(final String sourceFile, final String destFile,
+                final int fileNo, final int fileSize) {
+            ignore();
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final synchronized void updateByte(final int n) {
+            total = n;
+            max = Math.max(max, n);
+        }
+
+        /**
+         * Returns the last reported total.
+         * 
+         * @return Number of bytes.
+         */
+        public final synchronized int getTotal() {
+            return total;
+        }
+
+        /**
+         * Returns the highest reported total.
+         * 
+         * @return Number of bytes.
+         */
+        public final synchronized int getMax() {
+            return max;
+        }
+
+    }
+
+    /**
+     * Serves the test content.
+     */
+    private final class Handler implements HttpHandler {
+
+        private final boolean head;
+
+        private final boolean ranges;
+
+        private final String etag;
+
+        private final boolean drop;
+
+        /**
+         * Constructor with server behavior.
+         * 
+         * @param head
+         *            Answer HEAD requests (otherwise 405).
+         * @param ranges
+         *            Honor Range headers.
+         * @param etag
+         *            Entity tag of GET responses.
+         * @param drop
+         *            Close the connection in the middle of the first range
+         *            response for every start position.
+         */
+        public Handler(final boolean head, final boolean ranges, final String etag,
+                final boolean drop) {
+            super();
+            this.head = head;
+            this.ranges = ranges;
+            this.etag = etag;
+            this.drop = drop;
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final void handle(final HttpExchange exchange) throws IOException {
+            try {
+                final Headers headers = exchange.getResponseHeaders();
+                if ("HEAD".equals(exchange.getRequestMethod())) {
+                    if (!head) {
+                        exchange.sendResponseHeaders(HTTP_BAD_METHOD, -1);
+                        return;
+                    }
+                    headers.set("ETag", ETAG);
+                    if (ranges) {
+                        headers.set("Accept-Ranges", "bytes");
+                    }
+                    headers.set("Content-Length", String.valueOf(SIZE));
+                    exchange.sendResponseHeaders(HTTP_OK, -1);
+                    return;
+                }
+                headers.set("ETag", etag);
+                final String range = exchange.getRequestHeaders().getFirst("Range");
+                final String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+                if (ranges && (range != null)
+                        && ((ifRange == null) || ifRange.equals(etag))) {
+                    final int dash = range.indexOf('-');
+                    final int start = Integer.parseInt(range.substring("bytes=".length(),
+                            dash));
+                    final int end = Integer.parseInt(range.substring(dash + 1));
+                    headers.set("Content-Range", "bytes " + start + "-" + end + "/" + SIZE);
+                    count(true);
+                    final int half = (end - start + 1) / 2;
+                    requested(start);
+                    if (drop && drop(start, half)) {
+                        sendPart(exchange, start, half);
+                    } else {
+                        send(exchange, HTTP_PARTIAL, start, end - start + 1);
+                    }
+                } else {
+                    count(false);
+                    send(exchange, HTTP_OK, 0, SIZE);
+                }
+            } finally {
+                exchange.close();
+            }
+        }
+
+        private void send(final HttpExchange exchange, final int code, final int start,
+                final int len) throws IOException {
+            exchange.sendResponseHeaders(code, len);
+            final OutputStream out = exchange.getResponseBody();
+            out.write(content, start, len);
+            out.close();
+        }
+
+        private void sendPart(final HttpExchange exchange, final int start,
+                final int written) throws IOException {
+            // Chunked, so the body simply ends before the requested range
+            exchange.sendResponseHeaders(HTTP_PARTIAL, 0);
+            final OutputStream out = exchange.getResponseBody();
+            out.write(content, start, written);
+            out.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,222 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.progress;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.testng.Assert;
+
+/**
+ * Tests for {@link ZipExtractor}.
+ */
+public final class ZipExtractorTest {
+
+    private File dir;
+
+    private File zipFile;
+
+    private File destDir;
+
+    /**
+     * Creates the test directory.
+     * 
+     * @throws IOException
+     *             Error creating the directory.
+     * 
+     * @testng.before-method
+     */
+    public final void setUp() throws IOException {
+        dir = File.createTempFile("ZipExtractorTest", "");
+        dir.delete();
+        dir.mkdir();
+        zipFile = new File(dir, "test.zip");
+        destDir = new File(dir, "dest");
+    }
+
+    /**
+     * Removes the test directory.
+     * 
+     * @testng.after-method
+     */
+    public final void tearDown() {
+        delete(dir);
+    }
+
+    /**
+     * Extracts an archive with several files and directories.
+     * 
+     * @throws IOException
+     *             Error extracting.
+     * 
+     * @testng.test
+     */
+    public final void testExtract() throws IOException {
+        final String[] names = new String[] {"a.txt", "sub/b.bin", "sub/deeper/c.bin",
+                "empty.txt"};
+        final byte[][] contents = new byte[][] {"Hello".getBytes("US-ASCII"),
+                random(300 * 1024, 1), random(70 * 1024, 2), new byte[0]};
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            out.putNextEntry(new ZipEntry("emptydir/"));
+            out.closeEntry();
+            for (int i = 0; i < names.length; i++) {
+                out.putNextEntry(new ZipEntry(names[i]));
+                out.write(contents[i]);
+                out.closeEntry();
+            }
+        } finally {
+            out.close();
+        }
+
+        final Recorder recorder = new Recorder();
+        final ZipExtractor extractor = new ZipExtractor(recorder, null);
+        extractor.setThreadCount(2);
+        extractor.setBufferSize(8 * 1024);
+
+        Assert.assertEquals(ZipExtractor.countFiles(zipFile), names.length);
+        Assert.assertEquals(extractor.extract(zipFile, destDir), names.length);
+        for (int i = 0; i < names.length; i++) {
+            assertContent(new File(destDir, names[i]), contents[i]);
+        }
+        Assert.assertTrue(new File(destDir, "emptydir").isDirectory());
+        Assert.assertEquals(recorder.getFileNos(), Arrays.asList(new Object[] {
+                new Integer(1), new Integer(2), new Integer(3), new Integer(4)}));
+        Assert.assertFalse(recorder.isNegative());
+    }
+
+    /**
+     * An entry that points outside of the target directory fails the
+     * extraction before anything is written.
+     * 
+     * @throws IOException
+     *             Error creating the archive.
+     * 
+     * @testng.test
+     */
+    public final void testZipSlip() throws IOException {
+        final ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zipFile));
+        try {
+            out.putNextEntry(new ZipEntry("good.txt"));
+            out.write(random(100, 3));
+            out.closeEntry();
+            out.putNextEntry(new ZipEntry("../evil.txt"));
+            out.write(random(100, 4));
+            out.closeEntry();
+        } finally {
+            out.close();
+        }
+
+        try {
+            new ZipExtractor(null, null).extract(zipFile, destDir);
+            Assert.fail("Expected an IOException");
+        } catch (final IOException ex) {
+            Assert.assertFalse(new File(dir, "evil.txt").exists());
+            Assert.assertFalse(new File(destDir, "good.txt").exists());
+        }
+    }
+
+    private static byte[] random(final int size, final long seed) {
+        final byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return data;
+    }
+
+    private static void assertContent(final File file, final byte[] expected)
+            throws IOException {
+        final byte[] buf = new byte[(int) file.length()];
+        final InputStream in = new FileInputStream(file);
+        try {
+            int pos = 0;
+            int count;
+            while ((pos < buf.length) && ((count = in.read(buf, pos, buf.length - pos)) > 0)) {
+                pos = pos + count;
+            }
+        } finally {
+            in.close();
+        }
+        Assert.assertTrue(Arrays.equals(buf, expected), "Content of " + file + " differs");
+    }
+
+    private static void delete(final File file) {
+        final File[] files = file.listFiles();
+        if (files != null) {
+            for (int i = 0; i < files.length; i++) {
+                delete(files[i]);
+            }
+        }
+        file.delete();
+    }
+
+    /**
+     * Records the calls of the extractor.
+     */
+    private static final class Recorder implements FileCopyProgressListener {
+
+        private final List fileNos = new ArrayList();
+
+        private boolean negative = false;
+
+        /**
+         * {@inheritDoc}
+         */
+        public final synchronized void updateFile(final String sourceFile,
+                final String destFile, final int fileNo, final int fileSize) {
+            fileNos.add(new Integer(fileNo));
+        }
+
+        /**
+         * {@inheritDoc}
+         */
+        public final synchronized void updateByte(final int n) {
+            if (n < 0) {
+                negative = true;
+            }
+        }
+
+        /**
+         * Returns the announced file numbers.
+         * 
+         * @return File numbers in the order they were reported.
+         */
+        public final synchronized List getFileNos() {
+            return fileNos;
+        }
+
+        /**
+         * Returns if a negative byte count was reported.
+         * 
+         * @return If a count was below zero <code>true</code> else
+         *         <code>false</code>.
+         */
+        public final synchronized boolean isNegative() {
+            return negative;
+        }
+
+    }
+
+}
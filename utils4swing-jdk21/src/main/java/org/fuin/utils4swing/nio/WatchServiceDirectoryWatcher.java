@@ -0,0 +1,169 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.nio;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fuin.utils4j.Utils4J;
+import org.fuin.utils4swing.dialogs.DirectoryListingCache;
+import org.fuin.utils4swing.dialogs.DirectoryListingWatcher;
+
+/**
+ * Invalidates the entries of a {@link DirectoryListingCache} with a
+ * <code>WatchService</code>. Only directories that are in the cache are
+ * registered, so the number of watches is bounded by the size of the cache.
+ * A virtual thread waits for the events. Example:
+ * 
+ * <pre>
+ * WatchServiceDirectoryWatcher.install(DirectoryListingCache.getDefault());
+ * </pre>
+ */
+public final class WatchServiceDirectoryWatcher implements DirectoryListingWatcher, AutoCloseable {
+
+    private final DirectoryListingCache cache;
+
+    private final WatchService watchService;
+
+    private final Map<File, WatchKey> keys = new ConcurrentHashMap<>();
+
+    private final Thread thread;
+
+    /**
+     * Constructor with cache. The watcher is not installed - Use
+     * {@link #install(DirectoryListingCache)} for this.
+     * 
+     * @param cache
+     *            Cache to invalidate.
+     * 
+     * @throws IOException
+     *             Error creating the watch service.
+     */
+    public WatchServiceDirectoryWatcher(final DirectoryListingCache cache) throws IOException {
+        super();
+        Utils4J.checkNotNull("cache", cache);
+        this.cache = cache;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = Thread.ofVirtual().name("directory-listing-watcher").start(this::run);
+    }
+
+    /**
+     * Creates a watcher and sets it for a cache.
+     * 
+     * @param cache
+     *            Cache to invalidate.
+     * 
+     * @return New watcher.
+     * 
+     * @throws IOException
+     *             Error creating the watch service.
+     */
+    public static WatchServiceDirectoryWatcher install(final DirectoryListingCache cache)
+            throws IOException {
+        final WatchServiceDirectoryWatcher watcher = new WatchServiceDirectoryWatcher(cache);
+        cache.setWatcher(watcher);
+        return watcher;
+    }
+
+    @Override
+    public boolean watch(final File dir) {
+        if (keys.containsKey(dir)) {
+            return true;
+        }
+        try {
+            final WatchKey key = dir.toPath().register(watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE);
+            keys.put(dir, key);
+            return true;
+        } catch (final IOException | RuntimeException ex) {
+            // Not supported for this directory - The cache falls back to the
+            // last modification time
+            return false;
+        }
+    }
+
+    @Override
+    public void unwatch(final File dir) {
+        final WatchKey key = keys.remove(dir);
+        if (key != null) {
+            key.cancel();
+        }
+    }
+
+    /**
+     * Returns the number of watched directories.
+     * 
+     * @return Number of directories.
+     */
+    public int getWatchCount() {
+        return keys.size();
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                final WatchKey key = watchService.take();
+                final File dir = ((Path) key.watchable()).toFile();
+                // Create, delete and overflow all change the listing
+                key.pollEvents();
+                // Invalidating cancels the key - The next visit registers again
+                cache.invalidate(dir);
+                if (!key.reset()) {
+                    keys.remove(dir, key);
+                }
+            }
+        } catch (final InterruptedException | ClosedWatchServiceException ex) {
+            ignore();
+        }
+    }
+
+    /**
+     * Removes the watcher from the cache if it's still installed and stops
+     * watching.
+     */
+    @Override
+    public void close() {
+        synchronized (cache) {
+            if (cache.getWatcher() == this) {
+                cache.setWatcher(null);
+            }
+        }
+        // The entries were only valid as long as they were watched
+        cache.clear();
+        try {
+            watchService.close();
+        } catch (final IOException ex) {
+            ignore();
+        }
+        keys.clear();
+        thread.interrupt();
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+}
@@ -0,0 +1,166 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.vthreads;
+
+import java.awt.EventQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Blocking hand-off of work to the Event Dispatch Thread (EDT) that is safe to
+ * use from virtual threads. <code>SwingUtilities.invokeAndWait(Runnable)</code>
+ * waits inside a <code>synchronized</code> block and pins the carrier thread of
+ * a virtual thread for the whole time the EDT (or the user in front of a modal
+ * dialog) needs. The methods of this class wait on a
+ * <code>CompletableFuture</code> instead, so the virtual thread is unmounted
+ * while it waits. Calls from the EDT itself are executed directly.
+ */
+public final class EdtHandoff {
+
+    /**
+     * Private constructor.
+     */
+    private EdtHandoff() {
+        throw new UnsupportedOperationException(
+                "This utility class is not intended to be instanciated!");
+    }
+
+    /**
+     * Executes a task in the EDT and waits for the result.
+     * 
+     * @param task
+     *            Task to execute.
+     * 
+     * @return Result of the task.
+     * 
+     * @param <T>
+     *            Type of the result.
+     */
+    public static <T> T callAndWait(final Callable<T> task) {
+        if (EventQueue.isDispatchThread()) {
+            return callDirect(task);
+        }
+        try {
+            return submit(task).get();
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (final ExecutionException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    /**
+     * Executes a task in the EDT and waits at most the given time for the
+     * result. The task is not aborted if the time is exceeded - It simply
+     * finishes later in the EDT.
+     * 
+     * @param task
+     *            Task to execute.
+     * @param timeout
+     *            Maximum time to wait.
+     * @param unit
+     *            Unit of the timeout.
+     * 
+     * @return Result of the task.
+     * 
+     * @throws TimeoutException
+     *             The task did not finish in time.
+     * 
+     * @param <T>
+     *            Type of the result.
+     */
+    public static <T> T callAndWait(final Callable<T> task, final long timeout,
+            final TimeUnit unit) throws TimeoutException {
+        if (EventQueue.isDispatchThread()) {
+            return callDirect(task);
+        }
+        try {
+            return submit(task).get(timeout, unit);
+        } catch (final InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(ex);
+        } catch (final ExecutionException ex) {
+            throw unwrap(ex);
+        }
+    }
+
+    /**
+     * Executes a task in the EDT and waits until it's finished. Useful for the
+     * blocking methods of the library like
+     * <code>FileCopyProgressMonitor.open()</code> that execute directly if
+     * called inside the EDT.
+     * 
+     * @param task
+     *            Task to execute.
+     */
+    public static void runAndWait(final Runnable task) {
+        callAndWait(() -> {
+            task.run();
+            return null;
+        });
+    }
+
+    /**
+     * Executes a task later in the EDT without waiting.
+     * 
+     * @param task
+     *            Task to execute.
+     * 
+     * @return Future that completes when the task has finished.
+     * 
+     * @param <T>
+     *            Type of the result.
+     */
+    public static <T> CompletableFuture<T> submit(final Callable<T> task) {
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        EventQueue.invokeLater(() -> {
+            try {
+                future.complete(task.call());
+            } catch (final Throwable t) {
+                future.completeExceptionally(t);
+            }
+        });
+        return future;
+    }
+
+    private static <T> T callDirect(final Callable<T> task) {
+        try {
+            return task.call();
+        } catch (final RuntimeException ex) {
+            throw ex;
+        } catch (final Exception ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    private static RuntimeException unwrap(final ExecutionException ex) {
+        final Throwable cause = ex.getCause();
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new RuntimeException(cause);
+    }
+
+}
@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.vthreads;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.swing.SwingUtilities;
+
+import org.fuin.utils4swing.progress.FileCopier;
+
+/**
+ * Compares platform threads with virtual threads for many concurrent
+ * transfers that all wait for an answer from the EDT at the same time (like
+ * workers waiting for a confirmation dialog). The EDT is held busy until every
+ * worker has handed off its task, so all of them are really blocked inside
+ * <code>SwingUtilities.invokeAndWait</code> (platform) or
+ * <code>EdtHandoff.runAndWait</code> (virtual) when the measurement is taken.
+ * Run it once per mode in a fresh JVM:
+ * 
+ * <pre>
+ * java -cp ... org.fuin.utils4swing.vthreads.VirtualThreadCopyBenchmark platform 2000
+ * java -cp ... org.fuin.utils4swing.vthreads.VirtualThreadCopyBenchmark virtual 2000
+ * </pre>
+ * 
+ * Add <code>-Djdk.tracePinnedThreads=full</code> to verify that no virtual
+ * thread pins its carrier while waiting.
+ */
+public final class VirtualThreadCopyBenchmark {
+
+    private static final int FILE_SIZE = 16 * 1024;
+
+    private static final int BUFFER_SIZE = 4 * 1024;
+
+    /** Time for the last workers to go from posting the task to waiting. */
+    private static final long SETTLE_MILLIS = 1000;
+
+    /**
+     * Private constructor.
+     */
+    private VirtualThreadCopyBenchmark() {
+        throw new UnsupportedOperationException(
+                "This utility class is not intended to be instanciated!");
+    }
+
+    /**
+     * Runs the benchmark.
+     * 
+     * @param args
+     *            Mode ("platform" or "virtual") and number of concurrent
+     *            transfers (default 2000).
+     * 
+     * @throws Exception
+     *             Error running the benchmark.
+     */
+    public static void main(final String[] args) throws Exception {
+        System.setProperty("java.awt.headless", "true");
+        final boolean virtual = (args.length == 0) || "virtual".equals(args[0]);
+        final int tasks = (args.length > 1) ? Integer.parseInt(args[1]) : 2000;
+
+        final Path dir = Files.createTempDirectory("vthreads-benchmark");
+        final File src = dir.resolve("source.bin").toFile();
+        try (FileOutputStream out = new FileOutputStream(src)) {
+            out.write(new byte[FILE_SIZE]);
+        }
+
+        final long baseThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+        final long baseRss = readRssKb();
+
+        // The "user" does not answer before every worker asked
+        final CountDownLatch edtHeld = new CountDownLatch(1);
+        final CountDownLatch releaseEdt = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            edtHeld.countDown();
+            awaitUninterruptibly(releaseEdt);
+        });
+        edtHeld.await();
+        final CountDownLatch handingOff = new CountDownLatch(tasks);
+
+        final long start = System.nanoTime();
+        final ExecutorService executor;
+        if (virtual) {
+            executor = Executors.newVirtualThreadPerTaskExecutor();
+        } else {
+            executor = Executors.newCachedThreadPool();
+        }
+        final List<Future<?>> futures = new ArrayList<>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            final File dest = new File(dir.toFile(), "dest" + i + ".bin");
+            final int fileNo = i + 1;
+            futures.add(executor.submit(() -> {
+                final FileCopier copier = new FileCopier(null, null);
+                copier.setBufferSize(BUFFER_SIZE);
+                copier.copy(src, dest, fileNo);
+                handingOff.countDown();
+                // Blocks until the EDT is released
+                if (virtual) {
+                    EdtHandoff.runAndWait(() -> ignore());
+                } else {
+                    SwingUtilities.invokeAndWait(() -> ignore());
+                }
+                return null;
+            }));
+        }
+        handingOff.await();
+        TimeUnit.MILLISECONDS.sleep(SETTLE_MILLIS);
+
+        // Everybody is blocked on the EDT now - Take the measurement
+        final long threads = ManagementFactory.getThreadMXBean().getThreadCount() - baseThreads;
+        System.gc();
+        final long rss = readRssKb() - baseRss;
+        final Runtime rt = Runtime.getRuntime();
+        final long heapKb = (rt.totalMemory() - rt.freeMemory()) / 1024;
+
+        final int queued = countQueuedHandoffs(futures);
+        releaseEdt.countDown();
+        for (final Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        final long millis = (System.nanoTime() - start) / 1000000 - SETTLE_MILLIS;
+
+        System.out.println("mode=" + (virtual ? "virtual" : "platform") + ", transfers="
+                + tasks + ", blocked on EDT=" + queued + ", additional threads=" + threads
+                + ", additional RSS=" + rss
+                + " KB, used heap=" + heapKb + " KB, time=" + millis + " ms");
+
+        for (final File file : dir.toFile().listFiles()) {
+            file.delete();
+        }
+        dir.toFile().delete();
+        System.exit(0);
+    }
+
+    private static int countQueuedHandoffs(final List<Future<?>> futures) {
+        int count = 0;
+        for (final Future<?> future : futures) {
+            if (!future.isDone()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static void awaitUninterruptibly(final CountDownLatch latch) {
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await();
+            } catch (final InterruptedException ex) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long readRssKb() throws IOException {
+        final Path status = Path.of("/proc/self/status");
+        if (!Files.exists(status)) {
+            return 0;
+        }
+        for (final String line : Files.readAllLines(status)) {
+            if (line.startsWith("VmRSS:")) {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return 0;
+    }
+
+    private static void ignore() {
+        // Dummy method to satisfy Checkstyle's empty block check...
+    }
+
+}
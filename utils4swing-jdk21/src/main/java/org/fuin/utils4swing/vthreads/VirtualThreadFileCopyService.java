@@ -0,0 +1,104 @@
+/**
+ * Copyright (C) 2009 Future Invent Informationsmanagement GmbH. All rights
+ * reserved. <http://www.fuin.org/>
+ *
+ * This library is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU Lesser General Public License as published by the Free
+ * Software Foundation; either version 3 of the License, or (at your option) any
+ * later version.
+ *
+ * This library is distributed in the hope that it will be useful, but WITHOUT
+ * ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this library. If not, see <http://www.gnu.org/licenses/>.
+ */
+package org.fuin.utils4swing.vthreads;
+
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.fuin.utils4j.Cancelable;
+import org.fuin.utils4j.Utils4J;
+import org.fuin.utils4swing.progress.FileCopier;
+import org.fuin.utils4swing.progress.FileCopyProgressListener;
+
+/**
+ * Runs every file transfer in its own virtual thread. Thousands of concurrent
+ * transfers that block on I/O or on the user (use {@link EdtHandoff} for
+ * dialogs and monitors) cost a few kilobytes of heap each instead of a platform
+ * thread with its own stack.
+ */
+public final class VirtualThreadFileCopyService implements AutoCloseable {
+
+    private final ExecutorService executor;
+
+    private final int bufferSize;
+
+    /**
+     * Default constructor using the default buffer size of {@link FileCopier}.
+     */
+    public VirtualThreadFileCopyService() {
+        this(FileCopier.DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor with buffer size.
+     * 
+     * @param bufferSize
+     *            Size of the copy buffer used for each transfer.
+     */
+    public VirtualThreadFileCopyService(final int bufferSize) {
+        super();
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("The argument 'bufferSize' must be > 0: "
+                    + bufferSize);
+        }
+        this.bufferSize = bufferSize;
+        this.executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual()
+                .name("file-copy-", 0).factory());
+    }
+
+    /**
+     * Starts copying a file in a new virtual thread.
+     * 
+     * @param src
+     *            Source file.
+     * @param dest
+     *            Destination file.
+     * @param fileNo
+     *            Number of the file reported to the listener.
+     * @param listener
+     *            Listener to inform about progress - Can be <code>null</code>.
+     * @param cancelable
+     *            Cancel tracker - Can be <code>null</code>.
+     * 
+     * @return Future that returns the destination file when the copy has
+     *         finished.
+     */
+    public Future<File> submit(final File src, final File dest, final int fileNo,
+            final FileCopyProgressListener listener, final Cancelable cancelable) {
+        Utils4J.checkNotNull("src", src);
+        Utils4J.checkNotNull("dest", dest);
+        return executor.submit(() -> {
+            final FileCopier copier = new FileCopier(listener, cancelable);
+            copier.setBufferSize(bufferSize);
+            copier.copy(src, dest, fileNo);
+            return dest;
+        });
+    }
+
+    /**
+     * Stops accepting new transfers and waits until all running transfers are
+     * finished.
+     */
+    @Override
+    public void close() {
+        executor.close();
+    }
+
+}